@@ -1,627 +1,1345 @@
-/* 
-Copyright (c) 2007, AJ Shankar
-
-All rights reserved.
-
-Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
-
-    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
-    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
-    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
-
-THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
-"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
-LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
-A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
-CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
-EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
-PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
-PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
-LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
-NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
-SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
-*/
-
-/**
- * Does the offline bytecode transformation of invariants:
- * adds hooks to the invariants to call the runtime portion of Ditto,
- * inserts write barriers in the rest of the program to track heap changes.
- */
-package incrementalizer;
-import javassist.*;
-import javassist.expr.*;
-
-import java.io.IOException;
-import java.util.*;
-import java.io.*;
-
-/*
- * Optimizations to do:
- * multiple functions
- * help out with which args are non primitive
- * help out with runOnce node calls
- * special case hashCode, size, etc
- * objs accessed "everywhere" can be encoded more efficiently
- */
-
-public class Transform {
-	static boolean verbose = false; 
-	static ClassPool pool;
-	static ArrayList invFuncs;
-	static ArrayList allClasses;
-	static HashSet classesToWrite;
-	static HashSet barrieredTypes;
-	static HashMap methodsToInfo;
-	static class InvariantInfo {
-		String name;
-		boolean hasEntrypoint;
-		public InvariantInfo(String n) {
-			name = n;
-			hasEntrypoint = false;
-		}
-	}
-
-	static void usage() {
-		System.out.println("Usage: Transform [inv_list] [class_list] [--verbose]\n" +
-				"where 'inv_list'   containts a list of invariant functions, e.g. Foo.Bar\n" +
-				"and   'class_list' containts a list of all classes to be write-barriered.");
-		System.exit(1);
-	}
-
-	/**
-	 * @param args
-	 * @throws NotFoundException
-	 * @throws CannotCompileException
-	 * @throws IOException
-	 */
-	public static void main(String[] args) throws NotFoundException, IOException, CannotCompileException {
-		System.out.println("Ditto: Automatic Invariant Incrementalization");
-		System.out.println("Contact: AJ Shankar (aj@cs.berkeley.edu)\n");
-		if (args.length < 2)
-				usage();
-		
-		if (args.length == 3 && args[2].equals("--verbose"))
-			verbose = true;
-		
-		// read in list of functions that are invariants
-		String inv_list = args[0];
-		invFuncs = new ArrayList();
-		barrieredTypes = new HashSet();
-    readInputStrings(inv_list, invFuncs);	
-
-    String class_list = args[1];
-    allClasses = new ArrayList();
-    readInputStrings(class_list, allClasses);
-
-		// process them one by one
-		ArrayList toIncrementalize = new ArrayList();
-    classesToWrite = new HashSet();
-		pool = ClassPool.getDefault();
-		// to let Javassist find the relevant class
-		pool.insertClassPath(".");
-		for (int i = 0 ; i < invFuncs.size() ; i++) {
-			String s = (String) invFuncs.get(i);
-			int off = s.lastIndexOf('.');
-			if (off == -1) 
-				break;
-			String cl = s.substring(0,off);
-			String method = s.substring(off+1);
-			CtClass cc = null;
-			try {
-		    cc = pool.get(cl);
-		    // we store the name of the class containing the invariant
-		    // so that we can write out the class after modifications
-		    classesToWrite.add(cc);
-	    } catch (NotFoundException e1) {
-	    	System.out.println("Cannot find class " + cl + "; aborting.");
-	    	System.exit(1);
-	    }
-	    CtMethod m = null;
-	    try {
-	    	m = cc.getDeclaredMethod(method);
-	    } catch (NotFoundException e){
-	    	System.out.println("Cannot find method " + method + " in class " + cl);
-	    	System.exit(1);
-	    }
-	    System.out.println("Incrementalizing " + s);
-	    toIncrementalize.add(m);
-		}
-		
-		// we have to do this in stages to break recursion between functions
-		for (int j = 0 ; j < toIncrementalize.size() ; j++) {
-			CtMethod m = (CtMethod) toIncrementalize.get(j);
-			toIncrementalize.set(j, rewriteFunctionDeclaration(m));
-		}
-
-		methodsToInfo = new HashMap();
-		for (int j = 0 ; j < toIncrementalize.size() ; j++) {
-			CtMethod m = (CtMethod) toIncrementalize.get(j);
-	    // add hooks so that when the invariant is run, the runtime
-	    // library will construct the incremental data structures
-	    instrumentInvariant(m);
-		}
-		
-    // once we've incrementalized everything and identified
-    // what data types the invariants depend on, we write barrier 
-    // those data tyeps throughout the whole program
-		insertWriteBarriers(allClasses);
-		if (verbose) 
-			System.out.println("Num barriered " + numBarriered + " of " + numTotal);
-
-		// write out all the classes at the end
-		Iterator i = classesToWrite.iterator();
-		while(i.hasNext()) {
-			CtClass myc = (CtClass) i.next();
-			myc.writeFile();
-//			if (verbose)
-//				System.out.println("Class " + myc.getName() + " inherits from " + myc.getSuperclass().getName());
-		}
-		System.out.println("Done.");
-	}
-
-	static boolean isInvariant(CtMethod m) {
-		return (m.getName().indexOf("runOnce") != -1 ||
-			invFuncs.indexOf(m.getDeclaringClass().getName() + "." +	m.getName()) != -1);
-	}
-	static boolean isInvariant(MethodCall m) {
-		return (m.getMethodName().indexOf("runOnce") != -1 ||
-			invFuncs.indexOf(m.getClassName() + "." +	m.getMethodName()) != -1);
-	}
-	
-	private static void readInputStrings(String filename, ArrayList l) {
-	  try {
-      BufferedReader in = new BufferedReader(new FileReader(filename));
-      String str;
-      while ((str = in.readLine()) != null) {
-      	if (! str.startsWith("//"))
-          l.add(str);
-      }
-      in.close();
-    } catch (IOException e) {
-    	System.out.println("Error reading input file " + filename);
-    	System.exit(1);
-    }
-  }
-	
-	static int numBarriered;
-	static int numTotal;
-	
-	static void insertWriteBarriers(ArrayList cls) throws NotFoundException, CannotCompileException {
-		CtClass obj = pool.get("java.lang.Object");
-		CtClass inc_obj = pool.get("runtime.IncObject");
-		// first, superclass all the classes that need used bits
-		Iterator i = barrieredTypes.iterator();
-		if (verbose)
-			System.out.println("Number of field-types to barrier is " + barrieredTypes.size());
-		while (i.hasNext()) {
-			CtField f = (CtField)	i.next();
-//			if (verbose)
-//				System.out.println("Current field is " + f.getName());
-			CtClass c = f.getDeclaringClass();
-			if (c == obj) continue;
-			// move up until right before java.lang.object, and then insert
-			while (c.getSuperclass() != obj) {
-//				if (verbose)
-//					System.out.println("c is now " + c.getName());
-				c = c.getSuperclass();
-			}
-			if (c != inc_obj) {
-				if (verbose)
-					System.out.println("Setting superclass of " + c.getName() + " to IncObject");
-				c.setSuperclass(inc_obj);
-				classesToWrite.add(c);
-			}
-//			if (verbose)
-//				System.out.println("class " + c.getName() + " inherits from " + c.getSuperclass().getName());
-		}
-		
-		// now, iterate through all code, inserting barriers where necessary
-		// For each class, for each method, find all field writes of appropriate type 
-		// and enclosing object.
-		Iterator j = cls.iterator();
-		while (j.hasNext()) {
-			String cn = (String) j.next();
-			CtClass c = pool.get(cn);
-			CtMethod[] ms = c.getDeclaredMethods();
-			for (int k = 0 ; k < ms.length ; k++) {
-				CtMethod m = ms[k];
-//				if (verbose)
-//					System.out.println("Inserting barriers for method " + m.getLongName());
-				final String replacer = "{ if (((runtime.IncObject) $0).used != 0) "
-					+ "runtime.Dispatch.written[runtime.Dispatch.count++] = $0; $proceed($1); }";
-				m.instrument(
-					new ExprEditor() {
-				  	public void edit(FieldAccess f) throws CannotCompileException {
-			    		try {
-			    			CtField gf = f.getField();
-			    			if (f.isWriter())
-			    				numTotal++;
-					  		if (f.isWriter() && ! f.isStatic() && barrieredTypes.contains(gf)) {
-//					  			if (verbose)
-//					  				System.out.println("Found field candidate " + f.getFieldName());
-					  			numBarriered++;
-				    			f.replace(replacer);
-				    			barrieredTypes.add(gf);
-					  		}
-			    		} catch (Exception e) {
-			    			System.out.println("Can't get field. " + e);
-			    			e.printStackTrace();
-				    	}
-				  	}
-					});				
-			}
-		}
-	}
-	
-	// Code to generate a unique ID at runtime for a particular
-	// instantiation of an invariant. Run in the containing class's
-	// constructor.
-	static void addSetIDToConstructors(CtConstructor[] c, String id_name, 
-			String data_name, InvariantInfo ii, boolean init_ii) throws CannotCompileException {
-		String bool = id_name + "Done";
-		for (int i = 0 ; i < c.length ; i++) {
-			if (! c[i].isConstructor())
-				continue;
-			if (init_ii) {
-				String s2 = "{  if (!"+bool+") { " + ii.name + 
-					" = runtime.Dispatch.registerInvariant(new runtime.InvariantData());}}";
-				if (verbose)
-					System.out.println("Adding invariant register to constructor " + c[i].getName());
-				c[i].insertBeforeBody(s2);
-			}
-			String s = "{ if (!"+bool+") { " + id_name + " = runtime.Dispatch.registerFunction(new "
-				+ data_name + "((Object) this, " + ii.name + ")); " + bool + " = true; }}";
-			if (verbose)
-				System.out.println("Adding function register to constructor " + c[i].getName());
-			c[i].insertAfter(s);
-
-		}
-	}
-	
-	static String getConv(String cast, String expr, String conv) {
-		return "((" + cast + ") " + expr + ")."+conv+"()";
-	}
-	
-	static String getParmCast(CtClass parm, String expr) {
-		if (parm == CtClass.intType)
-			return getConv("Integer", expr, "intValue");
-		else if (parm == CtClass.booleanType)
-			return getConv("Boolean", expr, "booleanValue");
-		else if (parm == CtClass.floatType)
-			return getConv("Float", expr, "floatValue");
-		else if (parm == CtClass.doubleType)
-			return getConv("Double", expr, "doubleValue");
-		else if (parm == CtClass.charType)
-			return getConv("Character", expr, "charValue");
-		else
-			return "("+parm.getName()+") " + expr;
-	}
-	
-	// the call to invoke the invariant used by the run function below
-	static String createFunctionCall(CtMethod m, String name, String extra_args) 
-		throws NotFoundException {
-		String cn = m.getDeclaringClass().getName();
-		StringBuffer call = new StringBuffer(cn + " foo = ("+cn+") dataStructure;\n" +
-				"return foo." + name + "(");
-		CtClass[] parm_types = m.getParameterTypes();
-		int args = parm_types.length - runtime.Dispatch.ignoreArgs;
-		for (int i = 0 ; i < args ; i++ ) {
-			call.append(getParmCast(parm_types[i], "args["+i+"]") + ", ");
-		}
-		call.append(extra_args + ");");
-		return call.toString();
-	}
-	
-	// this is a driver function that the runtime dispatch invokes
-	// it calls the actual invariant with the correct arguments
-	static void createInvariantDataRun(CtMethod m, CtClass c, int numCalls) 
-		throws NotFoundException, CannotCompileException {
-		String call = createFunctionCall(m, m.getName(), "parent, -1");
-		if (verbose)
-			System.out.println("Driver function run call is " + call);
-		String debug = "System.out.println(\"About to run invariant\");";
-		CtMethod newm = CtNewMethod.make("public Object run(Object[] args, " + 
-				"runtime.ComputationNode parent) { /*" + debug + "*/ " 
-				+ call + " } ", c);
-		c.addMethod(newm);
-		
-		String once_call = createFunctionCall(m, m.getName() + "_runOnce", "children");
-		if (verbose)
-			System.out.println("Run once call is " + once_call);
-		CtMethod oncem = CtNewMethod.make("public Object runOnce(Object[] args, " + 
-				"Object[] children) { " + once_call + " }", c);
-		c.addMethod(oncem);
-		
-		CtMethod ncm = CtNewMethod.make("public int numCalls() { return " + numCalls + "; }", c);
-		c.addMethod(ncm);
-	}
-	
-	static boolean didSomething;
-	
-	static boolean rerouteInvariantCalls(final CtMethod m, final CtClass c, 
-						final String inv_id) 
-			throws CannotCompileException, NotFoundException {
-		final CtClass ret_type = m.getReturnType();
-		CtMethod[] ms = c.getDeclaredMethods();
-		didSomething = false;
-		for (int i = 0 ; i < ms.length ; i++) {
-			CtMethod newm = ms[i];
-			// do not want to reroute calls among invariants
-			if (isInvariant(newm))
-				continue;
-//			if (verbose)
-				//System.out.println("Rerouting calls in method " + newm.getLongName());
-			newm.instrument(
-			    new ExprEditor() {
-			        public void edit(MethodCall callm)
-			                      throws CannotCompileException {
-			        	if (callm.getClassName().equals(m.getDeclaringClass().getName())
-			                && callm.getMethodName().equals(m.getName())) {
-			        		if (verbose)
-			        			System.out.println("Rerouting call " + c.getName() + "." + m.getName());
-			            String replacer = "{ /* System.out.println(\"about to call " + m.getName() + 
-			            	"\"); */ $_ = ("+ret_type.getName()+ ") runtime.Dispatch.doIncremental((("+
-			            	m.getDeclaringClass().getName()+")$0)." + inv_id + ", $args); }";
-			            if (verbose)
-			            	System.out.println("Rerouting to: " + replacer);
-                   callm.replace(replacer);
-                   didSomething = true;
-          				classesToWrite.add(c);
-			           }
-			        }
-			    });
-		}
-		return didSomething;
-	}
-	
-	static int numCallsTmp;
-	// This version of the invariant is used when propagating
-	// results up the computation graph.
-	// It uses previously computed incremental results rather 
-	// than looking them up in the hash table. 
-	static int createRunOnceInvariant(CtMethod oldm, final CtClass c) 
-	throws NotFoundException, CannotCompileException {
-		numCallsTmp = 0;
-		if (verbose)
-			System.out.println("Creating runOnce invariant");
-
-		CtClass[] oldparms = oldm.getParameterTypes();
-		// first find all the subcalls and replace them with incremental results
-		CtClass[] newparms = new CtClass[oldparms.length + 1];
-		for (int l = 0 ; l < oldparms.length ; l++)
-			newparms[l] = oldparms[l];
-		newparms[oldparms.length] = pool.get("java.lang.Object[]");
-
-		final CtMethod m = CtNewMethod.abstractMethod(oldm.getReturnType(), 
-				oldm.getName() + "_runOnce", newparms, oldm.getExceptionTypes(), c);
-		m.setBody(oldm, null);
-
-		m.addLocalVariable("cachedValues", pool.get("java.lang.Object[]"));
-		m.insertBefore("{ cachedValues = $"+(oldparms.length+1)+"; }");
-		//m.insertAfter("{ System.out.println(\"Returning object \" + $_); }");
-		m.instrument(
-				new ExprEditor() {
-
-					public void edit(MethodCall m) throws CannotCompileException {
-						if (m.getClassName().equals(c.getName()) && isInvariant(m)) {
-							if (verbose)
-								System.out.println("Replacing recursive invariant function call " + 
-										m.getMethodName() + " with cached value");
-							String replace_with = "{ $_ = ($r) ((runtime.ComputationNode) cachedValues["+(numCallsTmp++)+"]).result; }";
-							if (verbose)
-									System.out.println(replace_with);
-							m.replace(replace_with);
-							//m.replace("{ $_ = null; }");
-							
-						}
-					}
-		    });
-		c.addMethod(m);
-		c.setModifiers(c.getModifiers() & ~Modifier.ABSTRACT);
-		return numCallsTmp;
-	}
-
-	static CtMethod rewriteFunctionDeclaration(CtMethod m) throws CannotCompileException, RuntimeException, NotFoundException {
-		final CtClass c = m.getDeclaringClass();
-		// add memoizer fields
-		final String func_id = funcId(m.getName());
-		try {
-			CtField f = new CtField(pool.get("runtime.FunctionData"), func_id, c);
-			f.setModifiers(Modifier.PUBLIC);
-			c.addField(f);
-			
-			c.addField(new CtField(CtClass.booleanType, func_id + "Done", c));
-		} catch (javassist.bytecode.DuplicateMemberException e) {
-			System.out.println("Exception: " + e);
-			System.out.println("Have you already run Ditto on this invariant before?");
-			System.out.println("If so, you need to rebuild it before running Ditto on it again.");
-			System.exit(1);
-		}
-		
-		// make an auxiliary data class for this function
-		CtClass data_c = pool.makeClass(dataName(c, m), pool.get("runtime.FunctionData"));
-		if (verbose)
-			System.out.println("Created data class " + data_c.getName());
-		CtClass data_const_parms[] = { pool.get("java.lang.Object"), pool.get("runtime.InvariantData") };
-		CtConstructor data_const = new CtConstructor(data_const_parms, data_c);
-		data_const.setBody("{super($1, $2);}");
-		data_c.addConstructor(data_const);
-		// add to classes list so that this new class is written to disk
-		classesToWrite.add(data_c);
-
-		// first step: duplicate method. but we need to add the parent parameter
-
-		// construct the new list of args, with the additional ones
-		// used by the runtime system
-		CtClass[] oldparms = m.getParameterTypes();
-		int num_parms = oldparms.length + runtime.Dispatch.ignoreArgs;
-		CtClass[] newparms = new CtClass[num_parms];
-		for (int l = 0 ; l < oldparms.length ; l++)
-			newparms[l] = oldparms[l];
-		newparms[num_parms - 2] = pool.get("runtime.ComputationNode");
-		newparms[num_parms - 1] = CtClass.intType;
-		c.removeMethod(m); 
-		
-		// create a new duplicate method with the new args
-		final CtMethod newm = CtNewMethod.abstractMethod(m.getReturnType(), 
-					m.getName(), newparms, m.getExceptionTypes(), c);
-		newm.setBody(m, null);
-		c.addMethod(newm);
-		c.setModifiers(c.getModifiers() & ~Modifier.ABSTRACT);		
-
-		// create a version of the method that gets run on 
-		// result propagation up the computation graph
-		int numCalls = createRunOnceInvariant(m, c);
-		
-		// then, add checks and calls
-		newm.addLocalVariable("cn", pool.get("runtime.ComputationNode"));
-		newm.addLocalVariable("cachedValue", pool.get("runtime.ComputationNode"));
-		String debug = "/*System.out.println(\"Parent computation node is \" + cn);*/";
-		String s = "{ cn = $"+(num_parms-1)+"; "+debug + " cachedValue = runtime.Dispatch.getMemoized(" + func_id + 
-		", $args, cn, $"+(num_parms)+"); if (cachedValue != null && cachedValue.result != null) { " +  
-		" " + debug + "runtime.ComputationNode.computeDepth(cn); return ("+
-			newm.getReturnType().getName() + ") cachedValue.result; }}";
-		if (verbose)
-			System.out.println("Added function header: " + s);
-		newm.insertBefore(s);
-
-		// create a class so that the Dispatch can invoke this invariant
-		createInvariantDataRun(newm, data_c, numCalls);
-		
-		return newm;
-	}
-	
-	static String funcId(String n) {
-		return n + "Id";
-	}
-	
-	static String dataName(CtClass c, CtMethod m) {
-		return c.getName() + "_" + m.getName() + "Data";
-	}
-	
-	// the main method that incrementalizes the invariant
-	static CtMethod instrumentInvariant(final CtMethod newm) throws 
-			CannotCompileException, NotFoundException {
-		final CtClass c = newm.getDeclaringClass();		
-		final String func_id = funcId(newm.getName());
-		final String data_name = dataName(c, newm);
-		if (verbose)
-			System.out.println("Incrementalizing " + newm.getLongName() + " step 2");
-		
-		// see if there is already info associated with this function
-		final InvariantInfo i = (InvariantInfo) methodsToInfo.get(newm);
-		// find all function calls to other invariants, and add the boolean parameter
-		newm.instrument(
-				new ExprEditor() {
-					int res = 0;
-					public void edit(MethodCall m) throws CannotCompileException {
-						if (isInvariant(m)) {
-							if (verbose)
-								System.out.println("Rewriting recursive invariant function call " + m.getMethodName());
-							CtMethod tocall = null;
-							try {
-								// can't just get the method directly because it no longer 
-								// exists with this signature (we replaced it in the previous step)
-								String mn = m.getMethodName();
-								tocall = pool.getMethod(c.getName(), mn);
-							} catch (Exception e) {
-								throw new CannotCompileException(e);
-							}
-							m.replace("{ $_ = $proceed($$, cachedValue, " + res++ + "); }");
-							
-							InvariantInfo i2 = (InvariantInfo) methodsToInfo.get(tocall);
-							// if this has no info and other does, this gets that one
-							if (i == null && i2 != null)
-								methodsToInfo.put(newm, i2);
-							// and vice versa
-							else if (i != null && i2 == null)
-								methodsToInfo.put(tocall, i);
-							// if neither has, we create a new one
-							else if (i == null && i2 == null) {
-								InvariantInfo newi = new Transform.InvariantInfo(newm.getName() + "InvId");
-								methodsToInfo.put(newm, newi);
-								methodsToInfo.put(tocall, newi);
-							// if they both have different ones, bug
-							} else if (i != i2) {
-								throw new CannotCompileException("Methods " + newm + " and " + tocall + 
-										" are recursive but are also in different invariants!");
-							}
-							
-						}
-					}
-		    });
-
-		// at the end check to see if the return value is the same as the memoized value
-		newm.insertAfter("{ if (cachedValue != null) { cachedValue.result = $_; "+ 
-				"boolean _cd = true; for (int i = 0;i<cachedValue.children.length; i++) { "+
-				"if (cachedValue.children[i] != null) _cd = false; } if (_cd) runtime.ComputationNode.computeDepth(cachedValue); }}");
-		boolean rerouted = false;
-		// reroute all calls to this invariant to the runtime dispatch function
-		for (int q = 0 ; q < allClasses.size() ; q++) {
-			CtClass cl = pool.get((String)allClasses.get(q));
-			boolean thisReroute = rerouteInvariantCalls(newm, cl, func_id);
-			rerouted = rerouted || thisReroute;
-		}
-		
-		// since we cannot determine whether a new InvariantInfo was created 
-		// in the above ExprEditor without the use of a static variable,
-		// we refetch the mapped info to see whether it's been set
-		InvariantInfo ii = (InvariantInfo) methodsToInfo.get(newm);
-		boolean initializeInvData = false;
-		if (rerouted) {
-			if (i == null && ii.hasEntrypoint == true) {
-				throw new CannotCompileException("Method " + newm + " is called both externally and " + 
-						"internally by another invariant function that is also called externally and internally." +
-						" Each invariant can only have one entrypoint function.");
-			} else { 
-				ii.hasEntrypoint = true;
-				initializeInvData = true;
-			}
-		}
-		
-		try { 
-			c.getField(ii.name);
-		} catch (NotFoundException e) {
-			if (verbose)
-				System.out.println("Creating field name " + ii.name);
-			CtField f = new CtField(pool.get("runtime.InvariantData"), ii.name, c);
-			f.setModifiers(Modifier.PUBLIC);
-			c.addField(f);				
-		}
-
-		// modify the class constructor to get an id from dispatch
-		addSetIDToConstructors(c.getConstructors(), func_id, data_name, ii,
-				initializeInvData);
-		System.out.println("Incrementalizing " + newm.getLongName() + " step 2");
-		// find all field reads and set the used bit
-		// TODO replace with inv_id!
-		final String replacer = "{ runtime.Dispatch.useMap("+ii.name+", $0, cachedValue); " +
-			" $_ = $proceed(); }";
-		
-		newm.instrument(
-				new ExprEditor() {
-					public void edit(FieldAccess f) throws CannotCompileException {
-						if (f.isReader() && ! f.isStatic()) {
-							try {
-								CtField gf = f.getField();
-								String pname = gf.getDeclaringClass().getPackageName(); 
-								// don't need to set used for stuff we've just added
-								if (gf.getName().equals(func_id) || 
-										(pname != null && pname.equals("runtime")))
-									return;
-								f.replace(replacer);
-								if (verbose)
-									System.out.println("Need to barrier object containing this field: " + gf.getName());
-								barrieredTypes.add(gf);
-							} catch (Exception e) {
-								System.out.println("Can't get field. " + e);
-								e.printStackTrace();
-							}
-						} 
-					}
-				});		
-		
-		return newm;
-	}
-	
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/**
+ * Does the offline bytecode transformation of invariants:
+ * adds hooks to the invariants to call the runtime portion of Ditto,
+ * inserts write barriers in the rest of the program to track heap changes.
+ */
+package incrementalizer;
+import javassist.*;
+import javassist.bytecode.CodeIterator;
+import javassist.bytecode.Opcode;
+import javassist.expr.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.io.*;
+
+/*
+ * Optimizations to do:
+ * multiple functions
+ * help out with which args are non primitive
+ * help out with runOnce node calls
+ * special case hashCode, size, etc
+ * objs accessed "everywhere" can be encoded more efficiently
+ */
+
+public class Transform {
+	static boolean verbose = false; 
+	static ClassPool pool;
+	static ArrayList invFuncs;
+	static ArrayList allClasses;
+	static HashSet classesToWrite;
+	static HashSet barrieredTypes;
+	static HashMap methodsToInfo;
+	static HashMap memoClasses = new HashMap();
+	// functions taking a single object, which may get a node field in 
+	// its class: { class, method name, parameter type, memo class, data constructor }
+	static ArrayList slotCandidates = new ArrayList();
+	// plain copies of the invariant functions, run when a check is 
+	// cheaper from scratch; their calls are redirected once all exist
+	static ArrayList scratchCopies = new ArrayList();
+	// whether each field read by an invariant, by "class.field", can 
+	// be read without recording a use; see isImmutable
+	static HashMap immutableFields = new HashMap();
+	// the fields each function reads and records uses of, as 
+	// "class.field" names separated by spaces, by data class name
+	static HashMap readFields = new HashMap();
+	static class InvariantInfo {
+		String name;
+		boolean hasEntrypoint;
+		public InvariantInfo(String n) {
+			name = n;
+			hasEntrypoint = false;
+		}
+	}
+
+	static void usage() {
+		System.out.println("Usage: Transform [inv_list] [class_list] [--verbose]\n" +
+				"where 'inv_list'   containts a list of invariant functions, e.g. Foo.Bar\n" +
+				"and   'class_list' containts a list of all classes to be write-barriered.");
+		System.exit(1);
+	}
+
+	/**
+	 * @param args
+	 * @throws NotFoundException
+	 * @throws CannotCompileException
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws NotFoundException, IOException, CannotCompileException {
+		System.out.println("Ditto: Automatic Invariant Incrementalization");
+		System.out.println("Contact: AJ Shankar (aj@cs.berkeley.edu)\n");
+		if (args.length < 2)
+				usage();
+		
+		if (args.length == 3 && args[2].equals("--verbose"))
+			verbose = true;
+		
+		// read in list of functions that are invariants
+		String inv_list = args[0];
+		invFuncs = new ArrayList();
+		barrieredTypes = new HashSet();
+    readInputStrings(inv_list, invFuncs);	
+
+    String class_list = args[1];
+    allClasses = new ArrayList();
+    readInputStrings(class_list, allClasses);
+
+		// process them one by one
+		ArrayList toIncrementalize = new ArrayList();
+    classesToWrite = new HashSet();
+		pool = ClassPool.getDefault();
+		// to let Javassist find the relevant class
+		pool.insertClassPath(".");
+		for (int i = 0 ; i < invFuncs.size() ; i++) {
+			String s = (String) invFuncs.get(i);
+			int off = s.lastIndexOf('.');
+			if (off == -1) 
+				break;
+			String cl = s.substring(0,off);
+			String method = s.substring(off+1);
+			CtClass cc = null;
+			try {
+		    cc = pool.get(cl);
+		    // we store the name of the class containing the invariant
+		    // so that we can write out the class after modifications
+		    classesToWrite.add(cc);
+	    } catch (NotFoundException e1) {
+	    	System.out.println("Cannot find class " + cl + "; aborting.");
+	    	System.exit(1);
+	    }
+	    CtMethod m = null;
+	    try {
+	    	m = cc.getDeclaredMethod(method);
+	    } catch (NotFoundException e){
+	    	System.out.println("Cannot find method " + method + " in class " + cl);
+	    	System.exit(1);
+	    }
+	    System.out.println("Incrementalizing " + s);
+	    toIncrementalize.add(m);
+		}
+		
+		// we have to do this in stages to break recursion between functions
+		for (int j = 0 ; j < toIncrementalize.size() ; j++) {
+			CtMethod m = (CtMethod) toIncrementalize.get(j);
+			toIncrementalize.set(j, rewriteFunctionDeclaration(m));
+		}
+		redirectScratchCalls();
+
+		methodsToInfo = new HashMap();
+		for (int j = 0 ; j < toIncrementalize.size() ; j++) {
+			CtMethod m = (CtMethod) toIncrementalize.get(j);
+	    // add hooks so that when the invariant is run, the runtime
+	    // library will construct the incremental data structures
+	    instrumentInvariant(m);
+		}
+		
+    // once we've incrementalized everything and identified
+    // what data types the invariants depend on, we write barrier 
+    // those data tyeps throughout the whole program
+		insertWriteBarriers(allClasses);
+		if (verbose) 
+			System.out.println("Num barriered " + numBarriered + " of " + numTotal);
+		
+		// only now do we know which parameter types are IncObjects
+		addNodeSlots();
+		addReadFields();
+
+		// write out all the classes at the end
+		Iterator i = classesToWrite.iterator();
+		while(i.hasNext()) {
+			CtClass myc = (CtClass) i.next();
+			myc.writeFile();
+//			if (verbose)
+//				System.out.println("Class " + myc.getName() + " inherits from " + myc.getSuperclass().getName());
+		}
+		System.out.println("Done.");
+	}
+
+	static boolean isInvariant(CtMethod m) {
+		return (m.getName().indexOf("runOnce") != -1 ||
+			invFuncs.indexOf(m.getDeclaringClass().getName() + "." +	m.getName()) != -1);
+	}
+	static boolean isInvariant(MethodCall m) {
+		return (m.getMethodName().indexOf("runOnce") != -1 ||
+			invFuncs.indexOf(m.getClassName() + "." +	m.getMethodName()) != -1);
+	}
+	
+	private static void readInputStrings(String filename, ArrayList l) {
+	  try {
+      BufferedReader in = new BufferedReader(new FileReader(filename));
+      String str;
+      while ((str = in.readLine()) != null) {
+      	if (! str.startsWith("//"))
+          l.add(str);
+      }
+      in.close();
+    } catch (IOException e) {
+    	System.out.println("Error reading input file " + filename);
+    	System.exit(1);
+    }
+  }
+	
+	// a field that nothing writes once its object is constructed can 
+	// be read by invariants without recording a use, and needs no 
+	// barrier: final fields, and fields that the classes in the class
+	// list only assign on this in constructors of the field's class
+	static boolean isImmutable(CtField f) throws NotFoundException, CannotCompileException {
+		if (Modifier.isFinal(f.getModifiers()))
+			return true;
+		final CtClass owner = f.getDeclaringClass();
+		final String name = f.getName();
+		String key = owner.getName() + "." + name;
+		Boolean known = (Boolean) immutableFields.get(key);
+		if (known != null)
+			return known.booleanValue();
+		
+		ArrayList scan = new ArrayList(allClasses);
+		if (! scan.contains(owner.getName()))
+			scan.add(owner.getName());
+		final boolean[] written = new boolean[1];
+		ExprEditor finder = new ExprEditor() {
+			public void edit(FieldAccess fa) {
+				if (written[0] || ! fa.isWriter() || fa.isStatic() || ! fa.getFieldName().equals(name))
+					return;
+				try {
+					CtField wf = fa.getField();
+					if (wf.getDeclaringClass() != owner)
+						return;
+				} catch (NotFoundException e) {
+					// can't tell which field it is; assume the worst
+				}
+				CtBehavior where = fa.where();
+				if (where instanceof CtConstructor && ((CtConstructor) where).isConstructor() &&
+						where.getDeclaringClass() == owner && initializesThis(fa))
+					return;
+				if (verbose)
+					System.out.println("Field " + name + " is written in " + where.getLongName());
+				written[0] = true;
+			}
+		};
+		for (int i = 0 ; i < scan.size() && ! written[0] ; i++) {
+			CtClass c = pool.get((String) scan.get(i));
+			CtBehavior[] bs = c.getDeclaredBehaviors();
+			for (int j = 0 ; j < bs.length && ! written[0] ; j++)
+				bs[j].instrument(finder);
+			CtConstructor init = c.getClassInitializer();
+			if (init != null && ! written[0])
+				init.instrument(finder);
+		}
+		immutableFields.put(key, Boolean.valueOf(! written[0]));
+		return ! written[0];
+	}
+	
+	// isImmutable for a field of a class in the current directory, 
+	// outside of a transform; only that class is scanned for writes. 
+	// TestDriver checks the analysis with it
+	public static boolean isImmutable(String class_name, String field) {
+		try {
+			if (pool == null) {
+				pool = ClassPool.getDefault();
+				pool.insertClassPath(".");
+				allClasses = new ArrayList();
+			}
+			return isImmutable(pool.get(class_name).getDeclaredField(field));
+		} catch (NotFoundException e) {
+			throw new IllegalArgumentException(e.toString());
+		} catch (CannotCompileException e) {
+			throw new IllegalStateException(e.toString());
+		}
+	}
+	
+	// whether a field write in a constructor assigns the object being 
+	// constructed, i.e. is this.f = <expression> as javac compiles it.
+	// the stack depth before each instruction is worked out in code 
+	// order; the receiver is the slot under the value, and it has to 
+	// have been pushed by aload_0 and left alone by the instructions 
+	// since, none of which may be reached by a jump from elsewhere. 
+	// anything the walk does not follow counts as a mutation
+	static boolean initializesThis(FieldAccess fa) {
+		javassist.bytecode.MethodInfo mi = fa.where().getMethodInfo();
+		javassist.bytecode.CodeAttribute ca = mi.getCodeAttribute();
+		javassist.bytecode.ConstPool cp = mi.getConstPool();
+		javassist.bytecode.ExceptionTable et = ca.getExceptionTable();
+		CodeIterator it = ca.iterator();
+		int at = fa.indexOfBytecode();
+		int[] depth = new int[ca.getCodeLength()];
+		Arrays.fill(depth, -1);
+		for (int h = 0 ; h < et.size() ; h++)
+			depth[et.handlerPc(h)] = 1;
+		// instruction offsets in code order, and (source, target) jumps
+		ArrayList order = new ArrayList();
+		ArrayList jumps = new ArrayList();
+		try {
+			int d = 0;
+			boolean falls = true;
+			while (it.hasNext()) {
+				int i = it.next();
+				if (! falls)
+					d = depth[i];
+				if (d < 0 || (depth[i] >= 0 && depth[i] != d))
+					return false;
+				depth[i] = d;
+				order.add(Integer.valueOf(i));
+				int[] effect = stackEffect(it, i, cp);
+				if (effect == null || effect[0] > d)
+					return false;
+				d += effect[1] - effect[0];
+				int op = it.byteAt(i);
+				int target = -1;
+				if ((op >= Opcode.IFEQ && op <= Opcode.GOTO) || op == Opcode.IFNULL || op == Opcode.IFNONNULL)
+					target = i + it.s16bitAt(i + 1);
+				else if (op == Opcode.GOTO_W)
+					target = i + it.s32bitAt(i + 1);
+				if (target >= 0) {
+					if (depth[target] >= 0 && depth[target] != d)
+						return false;
+					depth[target] = d;
+					jumps.add(new int[] { i, target });
+				}
+				falls = ! (op == Opcode.GOTO || op == Opcode.GOTO_W || op == Opcode.ATHROW || 
+						(op >= Opcode.IRETURN && op <= Opcode.RETURN));
+			}
+		} catch (javassist.bytecode.BadBytecode e) {
+			return false;
+		}
+		
+		String type = fa.getSignature();
+		int receiver = depth[at] - 1 - (type.equals("J") || type.equals("D") ? 2 : 1);
+		int k = order.indexOf(Integer.valueOf(at));
+		int q = -1;
+		while (--k >= 0) {
+			int i = ((Integer) order.get(k)).intValue();
+			if (depth[i] <= receiver) {
+				q = i;
+				break;
+			}
+			// an instruction popping down to the receiver could replace it
+			if (depth[i] - stackEffect(it, i, cp)[0] <= receiver)
+				return false;
+		}
+		if (q < 0 || depth[q] != receiver)
+			return false;
+		int op = it.byteAt(q);
+		if (op != Opcode.ALOAD_0 && ! (op == Opcode.ALOAD && it.byteAt(q + 1) == 0))
+			return false;
+		for (int j = 0 ; j < jumps.size() ; j++) {
+			int[] jump = (int[]) jumps.get(j);
+			if (jump[1] > q && jump[1] <= at && (jump[0] < q || jump[0] >= at))
+				return false;
+		}
+		for (int h = 0 ; h < et.size() ; h++)
+			if (et.handlerPc(h) > q && et.handlerPc(h) <= at)
+				return false;
+		return true;
+	}
+	
+	// { slots popped, slots pushed } by the instruction at i, or null 
+	// for the ones initializesThis does not follow: subroutines, 
+	// switches, wide, and the dup and swap forms that reorder the stack
+	static int[] stackEffect(CodeIterator it, int i, javassist.bytecode.ConstPool cp) {
+		int op = it.byteAt(i);
+		int grow = Opcode.STACK_GROW[op];
+		// operand size of the typed arithmetic, which goes i, l, f, d
+		int size = 1 + (op - Opcode.IADD) % 2;
+		if (op <= Opcode.ALOAD_3)
+			return new int[] { 0, grow };
+		if (op <= Opcode.SALOAD)
+			return new int[] { 2, 2 + grow };
+		if (op <= Opcode.POP2)
+			return new int[] { -grow, 0 };
+		if (op == Opcode.DUP)
+			return new int[] { 1, 2 };
+		if (op <= Opcode.SWAP)
+			return null;
+		if (op <= Opcode.DREM)
+			return new int[] { 2 * size, size };
+		if (op <= Opcode.DNEG)
+			return new int[] { size, size };
+		if (op <= Opcode.LUSHR)
+			return new int[] { 1 + size, size };
+		if (op <= Opcode.LXOR)
+			return new int[] { 2 * size, size };
+		if (op == Opcode.IINC)
+			return new int[] { 0, 0 };
+		if (op <= Opcode.I2S) {
+			int from = (op >= Opcode.L2I && op <= Opcode.L2D) || (op >= Opcode.D2I && op <= Opcode.D2F) ? 2 : 1;
+			return new int[] { from, from + grow };
+		}
+		if (op <= Opcode.DCMPG)
+			return new int[] { 1 - grow, 1 };
+		if (op <= Opcode.IF_ACMPNE || op == Opcode.IFNULL || op == Opcode.IFNONNULL || 
+				(op >= Opcode.IRETURN && op <= Opcode.RETURN) || op == Opcode.ATHROW || 
+				op == Opcode.MONITORENTER || op == Opcode.MONITOREXIT)
+			return new int[] { -grow, 0 };
+		if (op == Opcode.GOTO || op == Opcode.GOTO_W)
+			return new int[] { 0, 0 };
+		int index = it.u16bitAt(i + 1);
+		switch (op) {
+		case Opcode.GETSTATIC:
+			return new int[] { 0, javassist.bytecode.Descriptor.dataSize(cp.getFieldrefType(index)) };
+		case Opcode.PUTSTATIC:
+			return new int[] { javassist.bytecode.Descriptor.dataSize(cp.getFieldrefType(index)), 0 };
+		case Opcode.GETFIELD:
+			return new int[] { 1, javassist.bytecode.Descriptor.dataSize(cp.getFieldrefType(index)) };
+		case Opcode.PUTFIELD:
+			return new int[] { 1 + javassist.bytecode.Descriptor.dataSize(cp.getFieldrefType(index)), 0 };
+		case Opcode.INVOKEVIRTUAL:
+		case Opcode.INVOKESPECIAL:
+		case Opcode.INVOKESTATIC:
+		case Opcode.INVOKEINTERFACE: {
+			String desc = (op == Opcode.INVOKEINTERFACE ? cp.getInterfaceMethodrefType(index) : 
+				cp.getMethodrefType(index));
+			int params = javassist.bytecode.Descriptor.paramSize(desc);
+			int result = javassist.bytecode.Descriptor.dataSize(desc) + params;
+			return new int[] { params + (op == Opcode.INVOKESTATIC ? 0 : 1), result };
+		}
+		case Opcode.NEW:
+			return new int[] { 0, 1 };
+		case Opcode.NEWARRAY:
+		case Opcode.ANEWARRAY:
+		case Opcode.ARRAYLENGTH:
+		case Opcode.CHECKCAST:
+		case Opcode.INSTANCEOF:
+			return new int[] { 1, 1 };
+		case Opcode.MULTIANEWARRAY:
+			return new int[] { it.byteAt(i + 3), 1 };
+		}
+		return null;
+	}
+
+	// which of the field reads at the given offsets (in code order) can
+	// skip useMap because an earlier one has already recorded the same
+	// object. a read qualifies when its receiver comes straight from a
+	// local that holds one object for the whole invocation (never stored
+	// to, or stored to once before both reads) and an earlier read of
+	// that local dominates it: nothing between the two is reached by a
+	// jump from outside them or is a handler. switches, subroutines and
+	// wide locals are not followed, so no read is skipped there
+	static boolean[] coalescedReads(CtMethod m, ArrayList reads) {
+		boolean[] coalesced = new boolean[reads.size()];
+		javassist.bytecode.CodeAttribute ca = m.getMethodInfo().getCodeAttribute();
+		javassist.bytecode.ExceptionTable et = ca.getExceptionTable();
+		CodeIterator it = ca.iterator();
+		HashMap previous = new HashMap();
+		HashMap stores = new HashMap();
+		ArrayList jumps = new ArrayList();
+		try {
+			int last = -1;
+			while (it.hasNext()) {
+				int i = it.next();
+				previous.put(Integer.valueOf(i), Integer.valueOf(last));
+				last = i;
+				int op = it.byteAt(i);
+				if (op == Opcode.TABLESWITCH || op == Opcode.LOOKUPSWITCH || op == Opcode.WIDE ||
+						op == Opcode.JSR || op == Opcode.JSR_W || op == Opcode.RET)
+					return coalesced;
+				int local = -1;
+				if (op == Opcode.ASTORE)
+					local = it.byteAt(i + 1);
+				else if (op >= Opcode.ASTORE_0 && op <= Opcode.ASTORE_3)
+					local = op - Opcode.ASTORE_0;
+				if (local >= 0) {
+					Integer l = Integer.valueOf(local);
+					// the offset of the only store, or -1 once there are more
+					stores.put(l, Integer.valueOf(stores.containsKey(l) ? -1 : i));
+				}
+				if ((op >= Opcode.IFEQ && op <= Opcode.GOTO) || op == Opcode.IFNULL || op == Opcode.IFNONNULL)
+					jumps.add(new int[] { i, i + it.s16bitAt(i + 1) });
+				else if (op == Opcode.GOTO_W)
+					jumps.add(new int[] { i, i + it.s32bitAt(i + 1) });
+			}
+		} catch (javassist.bytecode.BadBytecode e) {
+			return coalesced;
+		}
+		for (int h = 0 ; h < et.size() ; h++)
+			jumps.add(new int[] { -1, et.handlerPc(h) });
+
+		// the local each read's receiver was loaded from, or -1
+		int[] locals = new int[reads.size()];
+		for (int r = 0 ; r < reads.size() ; r++) {
+			int at = ((Integer) reads.get(r)).intValue();
+			locals[r] = -1;
+			Integer p = (Integer) previous.get(Integer.valueOf(at));
+			if (p == null || p.intValue() < 0 || entered(jumps, at, at))
+				continue;
+			int q = p.intValue();
+			int op = it.byteAt(q);
+			int local = -1;
+			if (op == Opcode.ALOAD)
+				local = it.byteAt(q + 1);
+			else if (op >= Opcode.ALOAD_0 && op <= Opcode.ALOAD_3)
+				local = op - Opcode.ALOAD_0;
+			Integer store = (Integer) stores.get(Integer.valueOf(local));
+			if (local >= 0 && (store == null || (store.intValue() >= 0 && store.intValue() < q)))
+				locals[r] = local;
+		}
+		for (int r = 0 ; r < reads.size() ; r++) {
+			if (locals[r] < 0)
+				continue;
+			int at = ((Integer) reads.get(r)).intValue();
+			for (int e = 0 ; e < r && ! coalesced[r] ; e++) {
+				if (locals[e] != locals[r])
+					continue;
+				int from = ((Integer) reads.get(e)).intValue();
+				coalesced[r] = ! entered(jumps, from + 1, at);
+			}
+		}
+		return coalesced;
+	}
+
+	// whether a jump from outside [from, to] lands in it past from
+	static boolean entered(ArrayList jumps, int from, int to) {
+		for (int j = 0 ; j < jumps.size() ; j++) {
+			int[] jump = (int[]) jumps.get(j);
+			if (jump[1] >= from && jump[1] <= to && (jump[0] < from || jump[0] >= to))
+				return true;
+		}
+		return false;
+	}
+
+	static int numBarriered;
+	static int numTotal;
+	
+	static void insertWriteBarriers(ArrayList cls) throws NotFoundException, CannotCompileException {
+		CtClass obj = pool.get("java.lang.Object");
+		CtClass inc_obj = pool.get("runtime.IncObject");
+		// first, superclass all the classes that need used bits
+		Iterator i = barrieredTypes.iterator();
+		if (verbose)
+			System.out.println("Number of field-types to barrier is " + barrieredTypes.size());
+		while (i.hasNext()) {
+			CtField f = (CtField)	i.next();
+//			if (verbose)
+//				System.out.println("Current field is " + f.getName());
+			CtClass c = f.getDeclaringClass();
+			if (c == obj) continue;
+			// move up until right before java.lang.object, and then insert
+			while (c.getSuperclass() != obj) {
+//				if (verbose)
+//					System.out.println("c is now " + c.getName());
+				c = c.getSuperclass();
+			}
+			if (c != inc_obj) {
+				if (verbose)
+					System.out.println("Setting superclass of " + c.getName() + " to IncObject");
+				c.setSuperclass(inc_obj);
+				classesToWrite.add(c);
+			}
+//			if (verbose)
+//				System.out.println("class " + c.getName() + " inherits from " + c.getSuperclass().getName());
+		}
+		
+		// now, iterate through all code, inserting barriers where necessary
+		// For each class, for each method, find all field writes of appropriate type 
+		// and enclosing object.
+		Iterator j = cls.iterator();
+		while (j.hasNext()) {
+			String cn = (String) j.next();
+			CtClass c = pool.get(cn);
+			CtMethod[] ms = c.getDeclaredMethods();
+			for (int k = 0 ; k < ms.length ; k++) {
+				CtMethod m = ms[k];
+//				if (verbose)
+//					System.out.println("Inserting barriers for method " + m.getLongName());
+				final String replacer = "{ if (((runtime.IncObject) $0).used != 0 || runtime.Dispatch.logAll) "
+					+ "runtime.Dispatch.logWrite((runtime.IncObject) $0); $proceed($1); }";
+				m.instrument(
+					new ExprEditor() {
+				  	public void edit(FieldAccess f) throws CannotCompileException {
+			    		try {
+			    			CtField gf = f.getField();
+			    			if (f.isWriter())
+			    				numTotal++;
+					  		if (f.isWriter() && ! f.isStatic() && barrieredTypes.contains(gf)) {
+//					  			if (verbose)
+//					  				System.out.println("Found field candidate " + f.getFieldName());
+					  			numBarriered++;
+				    			f.replace(replacer);
+				    			barrieredTypes.add(gf);
+					  		}
+			    		} catch (Exception e) {
+			    			System.out.println("Can't get field. " + e);
+			    			e.printStackTrace();
+				    	}
+				  	}
+					});				
+			}
+		}
+	}
+	
+	// Code to generate a unique ID at runtime for a particular
+	// instantiation of an invariant. Run in the containing class's
+	// constructor.
+	static void addSetIDToConstructors(CtConstructor[] c, String id_name, 
+			String data_name, InvariantInfo ii, boolean init_ii) throws CannotCompileException {
+		String bool = id_name + "Done";
+		for (int i = 0 ; i < c.length ; i++) {
+			if (! c[i].isConstructor())
+				continue;
+			if (init_ii) {
+				String s2 = "{  if (!"+bool+") { " + ii.name + 
+					" = runtime.Dispatch.registerInvariant(new runtime.InvariantData());}}";
+				if (verbose)
+					System.out.println("Adding invariant register to constructor " + c[i].getName());
+				c[i].insertBeforeBody(s2);
+			}
+			String s = "{ if (!"+bool+") { " + id_name + " = runtime.Dispatch.registerFunction(new "
+				+ data_name + "((Object) this, " + ii.name + ")); " + bool + " = true; }}";
+			if (verbose)
+				System.out.println("Adding function register to constructor " + c[i].getName());
+			c[i].insertAfter(s);
+
+		}
+	}
+	
+	static String getConv(String cast, String expr, String conv) {
+		return "((" + cast + ") " + expr + ")."+conv+"()";
+	}
+	
+	static String getParmCast(CtClass parm, String expr) {
+		if (parm == CtClass.intType)
+			return getConv("Integer", expr, "intValue");
+		else if (parm == CtClass.booleanType)
+			return getConv("Boolean", expr, "booleanValue");
+		else if (parm == CtClass.floatType)
+			return getConv("Float", expr, "floatValue");
+		else if (parm == CtClass.doubleType)
+			return getConv("Double", expr, "doubleValue");
+		else if (parm == CtClass.charType)
+			return getConv("Character", expr, "charValue");
+		else if (parm == CtClass.longType)
+			return getConv("Long", expr, "longValue");
+		else if (parm == CtClass.shortType)
+			return getConv("Short", expr, "shortValue");
+		else if (parm == CtClass.byteType)
+			return getConv("Byte", expr, "byteValue");
+		else
+			return "("+parm.getName()+") " + expr;
+	}
+	
+	// the parameter signature of a memo class: a descriptor character
+	// per parameter, with 'L' for all object types
+	static String memoSignature(CtClass[] parms, int count) {
+		StringBuffer sig = new StringBuffer();
+		for (int i = 0 ; i < count ; i++) {
+			if (parms[i].isPrimitive())
+				sig.append(((CtPrimitiveType) parms[i]).getDescriptor());
+			else
+				sig.append('L');
+		}
+		return sig.toString();
+	}
+	
+	// returns the memo class for functions taking the first count 
+	// parameters, generating it the first time a package needs it.
+	// probe field ki and key column ci hold parameter i, unboxed.
+	static CtClass memoClass(CtClass[] parms, int count, String pkg) 
+		throws CannotCompileException, NotFoundException {
+		String sig = memoSignature(parms, count);
+		String name = (pkg == null ? "" : pkg + ".") + "DittoMemo_" + sig;
+		CtClass mc = (CtClass) memoClasses.get(name);
+		if (mc != null)
+			return mc;
+		mc = pool.makeClass(name, pool.get("runtime.Memo"));
+		StringBuffer hash = new StringBuffer("protected int hashProbe() { int h = 1; ");
+		StringBuffer matches_at = new StringBuffer("protected boolean matchesAt(int i) { return true");
+		StringBuffer matches = new StringBuffer("public boolean matches(Object[] args) { return true");
+		StringBuffer materialize = new StringBuffer("public Object[] materialize() { Object[] args = new Object[" + 
+				(count + runtime.Dispatch.ignoreArgs) + "]; ");
+		StringBuffer load = new StringBuffer("protected void load(Object[] args) { ");
+		StringBuffer alloc = new StringBuffer("protected void allocKeys(int n) { ");
+		StringBuffer store = new StringBuffer("protected void storeProbe(int i) { ");
+		StringBuffer move = new StringBuffer("protected void moveKey(int from, int to) { ");
+		StringBuffer clear = new StringBuffer("protected void clearKey(int i) { ");
+		for (int i = 0 ; i < count ; i++) {
+			CtClass t = parms[i];
+			String type = (t.isPrimitive() ? t.getName() : "Object");
+			String k = "k" + i, c = "c" + i, arg = "args[" + i + "]";
+			CtField kf = CtField.make("public " + type + " " + k + ";", mc);
+			mc.addField(kf);
+			mc.addField(CtField.make(type + "[] " + c + ";", mc));
+			String key_hash, same_at, same_arg, boxed;
+			if (! t.isPrimitive()) {
+				key_hash = "runtime.Memo.refHash(" + k + ")";
+				same_at = "runtime.Memo.sameRef(" + k + ", " + c + "[i])";
+				same_arg = "runtime.Memo.sameRef(" + k + ", " + arg + ")";
+				boxed = k;
+				load.append(k + " = " + arg + "; ");
+				clear.append(c + "[i] = null; ");
+			} else {
+				String unboxed = getParmCast(t, arg);
+				if (t == CtClass.booleanType)
+					key_hash = "(" + k + " ? 1231 : 1237)";
+				else if (t == CtClass.longType)
+					key_hash = "(int) (" + k + " ^ (" + k + " >>> 32))";
+				else if (t == CtClass.floatType)
+					key_hash = "Float.floatToIntBits(" + k + ")";
+				else if (t == CtClass.doubleType)
+					key_hash = "(int) (Double.doubleToLongBits(" + k + ") ^ (Double.doubleToLongBits(" + k + ") >>> 32))";
+				else
+					key_hash = "(int) " + k;
+				// floating point keys compare by bits, so NaN finds itself
+				if (t == CtClass.floatType) {
+					same_at = "Float.floatToIntBits(" + k + ") == Float.floatToIntBits(" + c + "[i])";
+					same_arg = "Float.floatToIntBits(" + k + ") == Float.floatToIntBits(" + unboxed + ")";
+				} else if (t == CtClass.doubleType) {
+					same_at = "Double.doubleToLongBits(" + k + ") == Double.doubleToLongBits(" + c + "[i])";
+					same_arg = "Double.doubleToLongBits(" + k + ") == Double.doubleToLongBits(" + unboxed + ")";
+				} else {
+					same_at = k + " == " + c + "[i]";
+					same_arg = k + " == " + unboxed;
+				}
+				boxed = ((CtPrimitiveType) t).getWrapperName() + ".valueOf(" + k + ")";
+				load.append(k + " = " + unboxed + "; ");
+			}
+			hash.append("h = runtime.Memo.combine(h, " + key_hash + "); ");
+			matches_at.append(" && " + same_at);
+			matches.append(" && " + same_arg);
+			materialize.append("args[" + i + "] = " + boxed + "; ");
+			alloc.append(c + " = new " + type + "[n]; ");
+			store.append(c + "[i] = " + k + "; ");
+			move.append(c + "[to] = " + c + "[from]; ");
+		}
+		hash.append("return runtime.Memo.mix(h); }");
+		matches_at.append("; }");
+		matches.append("; }");
+		materialize.append("return args; }");
+		load.append("}");
+		alloc.append("}");
+		store.append("}");
+		move.append("}");
+		clear.append("}");
+		String[] methods = { hash.toString(), matches_at.toString(), matches.toString(), 
+				materialize.toString(), load.toString(), alloc.toString(), store.toString(), 
+				move.toString(), clear.toString() };
+		for (int i = 0 ; i < methods.length ; i++) {
+			if (verbose)
+				System.out.println("Memo method: " + methods[i]);
+			mc.addMethod(CtNewMethod.make(methods[i], mc));
+		}
+		mc.addConstructor(CtNewConstructor.defaultConstructor(mc));
+		memoClasses.put(name, mc);
+		classesToWrite.add(mc);
+		if (verbose)
+			System.out.println("Created memo class " + name);
+		return mc;
+	}
+	
+	// stores the first count parameters into the probe of a memo class
+	static String probeStores(int count, String probe) {
+		StringBuffer stores = new StringBuffer();
+		for (int i = 0 ; i < count ; i++)
+			stores.append(probe + ".k" + i + " = $" + (i + 1) + "; ");
+		return stores.toString();
+	}
+	
+	// how the runtime stores the result of a function returning t:
+	// boolean, int and long results are kept unboxed
+	static int resultKind(CtClass t) {
+		if (t == CtClass.booleanType)
+			return runtime.FunctionData.BOOLEAN;
+		else if (t == CtClass.intType)
+			return runtime.FunctionData.INT;
+		else if (t == CtClass.longType)
+			return runtime.FunctionData.LONG;
+		else
+			return runtime.FunctionData.REF;
+	}
+	
+	// reads a primitive result back out of a node
+	static String readValue(int kind, String node) {
+		if (kind == runtime.FunctionData.BOOLEAN)
+			return "(" + node + ".value != 0L)";
+		else if (kind == runtime.FunctionData.INT)
+			return "((int) " + node + ".value)";
+		else
+			return node + ".value";
+	}
+	
+	// converts a primitive result for storing in a node
+	static String toValue(int kind, String expr) {
+		if (kind == runtime.FunctionData.BOOLEAN)
+			return "(" + expr + " ? 1L : 0L)";
+		else
+			return "((long) " + expr + ")";
+	}
+	
+	// boxes a primitive result for the Object-typed run functions
+	static String boxValue(int kind, String expr) {
+		if (kind == runtime.FunctionData.BOOLEAN)
+			return "Boolean.valueOf(" + expr + ")";
+		else if (kind == runtime.FunctionData.INT)
+			return "Integer.valueOf(" + expr + ")";
+		else
+			return "Long.valueOf(" + expr + ")";
+	}
+	
+	// the call to invoke the invariant used by the run function below.
+	// a primitive result is boxed, or returned as a long if as_value is set
+	static String createFunctionCall(CtMethod m, String name, String extra_args, boolean as_value) 
+		throws NotFoundException {
+		String cn = m.getDeclaringClass().getName();
+		StringBuffer call = new StringBuffer("foo." + name + "(");
+		CtClass[] parm_types = m.getParameterTypes();
+		int args = parm_types.length - runtime.Dispatch.ignoreArgs;
+		for (int i = 0 ; i < args ; i++ ) {
+			if (i > 0)
+				call.append(", ");
+			call.append(getParmCast(parm_types[i], "args["+i+"]"));
+		}
+		if (extra_args.length() > 0)
+			call.append((args > 0 ? ", " : "") + extra_args);
+		call.append(")");
+		int kind = resultKind(m.getReturnType());
+		String ret = call.toString();
+		if (kind != runtime.FunctionData.REF)
+			ret = (as_value ? toValue(kind, ret) : boxValue(kind, ret));
+		return cn + " foo = ("+cn+") dataStructure;\n" + "return " + ret + ";";
+	}
+	
+	// this is a driver function that the runtime dispatch invokes
+	// it calls the actual invariant with the correct arguments
+	static void createInvariantDataRun(CtMethod m, CtClass c, int numCalls) 
+		throws NotFoundException, CannotCompileException {
+		String call = createFunctionCall(m, m.getName(), "parent, -1", false);
+		if (verbose)
+			System.out.println("Driver function run call is " + call);
+		String debug = "System.out.println(\"About to run invariant\");";
+		CtMethod newm = CtNewMethod.make("public Object run(Object[] args, " + 
+				"runtime.ComputationNode parent) { /*" + debug + "*/ " 
+				+ call + " } ", c);
+		c.addMethod(newm);
+		
+		String once_call = createFunctionCall(m, m.getName() + "_runOnce", "children", false);
+		if (verbose)
+			System.out.println("Run once call is " + once_call);
+		CtMethod oncem = CtNewMethod.make("public Object runOnce(Object[] args, " + 
+				"Object[] children) { " + once_call + " }", c);
+		c.addMethod(oncem);
+		
+		CtMethod ncm = CtNewMethod.make("public int numCalls() { return " + numCalls + "; }", c);
+		c.addMethod(ncm);
+		
+		String scratch_call = createFunctionCall(m, m.getName() + "_scratch", "", false);
+		c.addMethod(CtNewMethod.make("public Object runScratch(Object[] args) { " + 
+				scratch_call + " }", c));
+		
+		// primitive results also get the unboxed versions 
+		// that ValueFunctionData declares
+		int kind = resultKind(m.getReturnType());
+		if (kind != runtime.FunctionData.REF) {
+			String value_call = createFunctionCall(m, m.getName(), "parent, -1", true);
+			c.addMethod(CtNewMethod.make("public long runValue(Object[] args, " + 
+					"runtime.ComputationNode parent) { " + value_call + " }", c));
+			String once_value_call = createFunctionCall(m, m.getName() + "_runOnce", "children", true);
+			c.addMethod(CtNewMethod.make("public long runOnceValue(Object[] args, " + 
+					"Object[] children) { " + once_value_call + " }", c));
+			String scratch_value_call = createFunctionCall(m, m.getName() + "_scratch", "", true);
+			c.addMethod(CtNewMethod.make("public long runScratchValue(Object[] args) { " + 
+					scratch_value_call + " }", c));
+		}
+	}
+	
+	static boolean didSomething;
+	
+	static boolean rerouteInvariantCalls(final CtMethod m, final CtClass c, 
+						final String inv_id) 
+			throws CannotCompileException, NotFoundException {
+		final CtClass ret_type = m.getReturnType();
+		final CtClass[] parms = m.getParameterTypes();
+		final int nparms = parms.length - runtime.Dispatch.ignoreArgs;
+		final String memo = memoClass(parms, nparms, m.getDeclaringClass().getPackageName()).getName();
+		CtMethod[] ms = c.getDeclaredMethods();
+		didSomething = false;
+		for (int i = 0 ; i < ms.length ; i++) {
+			CtMethod newm = ms[i];
+			// do not want to reroute calls among invariants
+			if (isInvariant(newm))
+				continue;
+//			if (verbose)
+				//System.out.println("Rerouting calls in method " + newm.getLongName());
+			newm.instrument(
+			    new ExprEditor() {
+			        public void edit(MethodCall callm)
+			                      throws CannotCompileException {
+			        	if (callm.getClassName().equals(m.getDeclaringClass().getName())
+			                && callm.getMethodName().equals(m.getName())) {
+			        		if (verbose)
+			        			System.out.println("Rerouting call " + c.getName() + "." + m.getName());
+			            String entry;
+			            switch (resultKind(ret_type)) {
+			            case runtime.FunctionData.BOOLEAN:
+			            	entry = "runtime.Dispatch.doIncrementalBoolean";
+			            	break;
+			            case runtime.FunctionData.INT:
+			            	entry = "runtime.Dispatch.doIncrementalInt";
+			            	break;
+			            case runtime.FunctionData.LONG:
+			            	entry = "runtime.Dispatch.doIncrementalLong";
+			            	break;
+			            default:
+			            	entry = "("+ret_type.getName()+ ") runtime.Dispatch.doIncremental";
+			            }
+			            // pass the arguments through the function's entry probe,
+			            // unless the checks go to the asynchronous checker
+			            String fd = "(("+m.getDeclaringClass().getName()+")$0)." + inv_id;
+			            String replacer = "{ /* System.out.println(\"about to call " + m.getName() + 
+			            	"\"); */ if (runtime.Dispatch.probeEntries()) { " + memo + " _p = (" + memo + ") " + 
+			            	fd + ".entry; " + probeStores(nparms, "_p") + "$_ = " + entry + "(" + fd + "); } " +
+			            	"else $_ = " + entry + "(" + fd + ", $args); }";
+			            if (verbose)
+			            	System.out.println("Rerouting to: " + replacer);
+                   callm.replace(replacer);
+                   didSomething = true;
+          				classesToWrite.add(c);
+			           }
+			        }
+			    });
+		}
+		return didSomething;
+	}
+	
+	static int numCallsTmp;
+	// This version of the invariant is used when propagating
+	// results up the computation graph.
+	// It uses previously computed incremental results rather 
+	// than looking them up in the hash table. 
+	static int createRunOnceInvariant(CtMethod oldm, final CtClass c) 
+	throws NotFoundException, CannotCompileException {
+		numCallsTmp = 0;
+		if (verbose)
+			System.out.println("Creating runOnce invariant");
+
+		CtClass[] oldparms = oldm.getParameterTypes();
+		// first find all the subcalls and replace them with incremental results
+		CtClass[] newparms = new CtClass[oldparms.length + 1];
+		for (int l = 0 ; l < oldparms.length ; l++)
+			newparms[l] = oldparms[l];
+		newparms[oldparms.length] = pool.get("java.lang.Object[]");
+
+		final CtMethod m = CtNewMethod.abstractMethod(oldm.getReturnType(), 
+				oldm.getName() + "_runOnce", newparms, oldm.getExceptionTypes(), c);
+		m.setBody(oldm, null);
+
+		m.addLocalVariable("cachedValues", pool.get("java.lang.Object[]"));
+		m.insertBefore("{ cachedValues = $"+(oldparms.length+1)+"; }");
+		//m.insertAfter("{ System.out.println(\"Returning object \" + $_); }");
+		m.instrument(
+				new ExprEditor() {
+
+					public void edit(MethodCall m) throws CannotCompileException {
+						if (m.getClassName().equals(c.getName()) && isInvariant(m)) {
+							if (verbose)
+								System.out.println("Replacing recursive invariant function call " + 
+										m.getMethodName() + " with cached value");
+							String slot = "cachedValues[" + (numCallsTmp++) + "]";
+							String child = "((runtime.ComputationNode) " + slot + ")";
+							int kind;
+							try {
+								kind = resultKind(javassist.bytecode.Descriptor.getReturnType(m.getSignature(), pool));
+							} catch (NotFoundException e) {
+								throw new CannotCompileException(e);
+							}
+							// a call the node did not make when it last ran has no 
+							// result to read; Dispatch reruns the node instead
+							String replace_with = "{ if (" + slot + " == null) runtime.Dispatch.missingChild(); " +
+									"$_ = " + (kind == runtime.FunctionData.REF ? 
+									"($r) " + child + ".result" : readValue(kind, child)) + "; }";
+							if (verbose)
+									System.out.println(replace_with);
+							m.replace(replace_with);
+							//m.replace("{ $_ = null; }");
+							
+						}
+					}
+		    });
+		c.addMethod(m);
+		c.setModifiers(c.getModifiers() & ~Modifier.ABSTRACT);
+		return numCallsTmp;
+	}
+
+	// the invariant as written, for checks that are cheaper to run from 
+	// scratch than incrementally. it keeps the original parameters and 
+	// records nothing; its calls are redirected by redirectScratchCalls
+	static void createScratchInvariant(CtMethod oldm, CtClass c) 
+	throws NotFoundException, CannotCompileException {
+		CtMethod m = CtNewMethod.abstractMethod(oldm.getReturnType(), 
+				oldm.getName() + "_scratch", oldm.getParameterTypes(), oldm.getExceptionTypes(), c);
+		m.setBody(oldm, null);
+		m.setModifiers(oldm.getModifiers());
+		c.addMethod(m);
+		c.setModifiers(c.getModifiers() & ~Modifier.ABSTRACT);
+		scratchCopies.add(m);
+	}
+	
+	// makes the scratch copies call each other rather than the 
+	// incremental functions
+	static void redirectScratchCalls() throws CannotCompileException {
+		for (int i = 0 ; i < scratchCopies.size() ; i++) {
+			CtMethod m = (CtMethod) scratchCopies.get(i);
+			m.instrument(
+					new ExprEditor() {
+						public void edit(MethodCall m) throws CannotCompileException {
+							if (isInvariant(m)) {
+								if (verbose)
+									System.out.println("Redirecting call " + m.getMethodName() + " to its scratch copy");
+								m.replace("{ $_ = $0." + m.getMethodName() + "_scratch($$); }");
+							}
+						}
+			    });
+		}
+	}
+
+	static CtMethod rewriteFunctionDeclaration(CtMethod m) throws CannotCompileException, RuntimeException, NotFoundException {
+		final CtClass c = m.getDeclaringClass();
+		// add memoizer fields
+		final String func_id = funcId(m.getName());
+		try {
+			CtField f = new CtField(pool.get("runtime.FunctionData"), func_id, c);
+			f.setModifiers(Modifier.PUBLIC);
+			c.addField(f);
+			
+			c.addField(new CtField(CtClass.booleanType, func_id + "Done", c));
+		} catch (javassist.bytecode.DuplicateMemberException e) {
+			System.out.println("Exception: " + e);
+			System.out.println("Have you already run Ditto on this invariant before?");
+			System.out.println("If so, you need to rebuild it before running Ditto on it again.");
+			System.exit(1);
+		}
+		
+		// make an auxiliary data class for this function
+		// whose superclass declares the unboxed run methods if the 
+		// result is primitive; createInvariantDataRun adds them
+		int kind = resultKind(m.getReturnType());
+		CtClass data_c = pool.makeClass(dataName(c, m), pool.get(kind == runtime.FunctionData.REF ? 
+				"runtime.FunctionData" : "runtime.ValueFunctionData"));
+		if (verbose)
+			System.out.println("Created data class " + data_c.getName());
+		CtClass data_const_parms[] = { pool.get("java.lang.Object"), pool.get("runtime.InvariantData") };
+		CtConstructor data_const = new CtConstructor(data_const_parms, data_c);
+		final CtClass memo_c = memoClass(m.getParameterTypes(), m.getParameterTypes().length, c.getPackageName());
+		data_const.setBody(dataConstructorBody(kind, memo_c.getName(), memo_c.getName()));
+		data_c.addConstructor(data_const);
+		if (m.getParameterTypes().length == 1 && ! m.getParameterTypes()[0].isPrimitive()) {
+			Object[] cand = { c, m.getName(), m.getParameterTypes()[0], memo_c, data_const, Integer.valueOf(kind) };
+			slotCandidates.add(cand);
+		}
+		// add to classes list so that this new class is written to disk
+		classesToWrite.add(data_c);
+
+		// first step: duplicate method. but we need to add the parent parameter
+
+		// construct the new list of args, with the additional ones
+		// used by the runtime system
+		CtClass[] oldparms = m.getParameterTypes();
+		int num_parms = oldparms.length + runtime.Dispatch.ignoreArgs;
+		CtClass[] newparms = new CtClass[num_parms];
+		for (int l = 0 ; l < oldparms.length ; l++)
+			newparms[l] = oldparms[l];
+		newparms[num_parms - 2] = pool.get("runtime.ComputationNode");
+		newparms[num_parms - 1] = CtClass.intType;
+		c.removeMethod(m); 
+		
+		// create a new duplicate method with the new args
+		final CtMethod newm = CtNewMethod.abstractMethod(m.getReturnType(), 
+					m.getName(), newparms, m.getExceptionTypes(), c);
+		newm.setBody(m, null);
+		c.addMethod(newm);
+		c.setModifiers(c.getModifiers() & ~Modifier.ABSTRACT);		
+
+		// create a version of the method that gets run on 
+		// result propagation up the computation graph
+		int numCalls = createRunOnceInvariant(m, c);
+		createScratchInvariant(m, c);
+		
+		// then, add checks and calls
+		newm.addLocalVariable("cn", pool.get("runtime.ComputationNode"));
+		newm.addLocalVariable("cachedValue", pool.get("runtime.ComputationNode"));
+		newm.addLocalVariable("probe", memo_c);
+		String debug = "/*System.out.println(\"Parent computation node is \" + cn);*/";
+		String cached, cached_result;
+		if (kind == runtime.FunctionData.REF) {
+			cached = "cachedValue.result != null";
+			cached_result = "(" + newm.getReturnType().getName() + ") cachedValue.result";
+		} else {
+			cached = "cachedValue.computed";
+			cached_result = readValue(kind, "cachedValue");
+		}
+		String s = "{ cn = $"+(num_parms-1)+"; "+debug + " probe = (" + memo_c.getName() + ") " + func_id + ".memo; " + 
+		probeStores(oldparms.length, "probe") + "cachedValue = runtime.Dispatch.getMemoized(" + func_id + 
+		", cn, $"+(num_parms)+"); if (cachedValue != null && " + cached + ") { " +  
+		" " + debug + "return " + cached_result + "; }}";
+		if (verbose)
+			System.out.println("Added function header: " + s);
+		newm.insertBefore(s);
+
+		// create a class so that the Dispatch can invoke this invariant
+		createInvariantDataRun(newm, data_c, numCalls);
+		
+		return newm;
+	}
+	
+	static String dataConstructorBody(int kind, String memo, String entry) {
+		return "{super($1, $2); kind = " + kind + "; memo = new " + memo + "(); entry = new " + entry + "();}";
+	}
+	
+	// for each function taking a single IncObject, adds a node field to
+	// the parameter's class and switches the function to a memo that 
+	// keeps its nodes there, so that a lookup is a field load. null keys,
+	// and keys whose field another instance of the function already uses, 
+	// go to the memo's table as before.
+	static void addNodeSlots() throws NotFoundException, CannotCompileException {
+		CtClass inc_obj = pool.get("runtime.IncObject");
+		Iterator i = slotCandidates.iterator();
+		while (i.hasNext()) {
+			Object[] cand = (Object[]) i.next();
+			CtClass c = (CtClass) cand[0];
+			String name = (String) cand[1];
+			CtClass p = (CtClass) cand[2];
+			CtClass memo_c = (CtClass) cand[3];
+			if (p == inc_obj || ! p.subtypeOf(inc_obj))
+				continue;
+			// the memo lives in the invariant's package and has to name p
+			if ((p.getClassFile2().getAccessFlags() & javassist.bytecode.AccessFlag.PUBLIC) == 0 &&
+					! p.getPackageName().equals(c.getPackageName()))
+				continue;
+			String field = c.getName().replace('.', '_') + "_" + name + "Node";
+			p.addField(CtField.make("public runtime.ComputationNode " + field + ";", p));
+			classesToWrite.add(p);
+			
+			CtClass mc = pool.makeClass(c.getName() + "_" + name + "Memo", memo_c);
+			String type = p.getName(), key = "((" + type + ") k0)." + field, 
+				arg = "((" + type + ") n.arguments[0])." + field;
+			String[] methods = {
+				"public runtime.ComputationNode find() { if (k0 instanceof " + type + ") " +
+					"return findSlotted(" + key + "); return lookup(); }",
+				"public void insert(runtime.ComputationNode n) { if (k0 instanceof " + type + 
+					" && takeSlot((runtime.IncObject) k0, " + key + ")) " + key + " = n; else add(n); }",
+				"public boolean remove(runtime.ComputationNode n) { if (n.arguments[0] instanceof " + type + 
+					" && " + arg + " == n) { " + arg + " = null; releaseSlot(); return true; } return delete(n); }"
+			};
+			for (int j = 0 ; j < methods.length ; j++) {
+				if (verbose)
+					System.out.println("Memo method: " + methods[j]);
+				mc.addMethod(CtNewMethod.make(methods[j], mc));
+			}
+			mc.addConstructor(CtNewConstructor.defaultConstructor(mc));
+			classesToWrite.add(mc);
+			((CtConstructor) cand[4]).setBody(dataConstructorBody(((Integer) cand[5]).intValue(), 
+					mc.getName(), memo_c.getName()));
+			if (verbose)
+				System.out.println("Keeping nodes of " + c.getName() + "." + name + " in field " + 
+						field + " of " + type);
+		}
+	}
+	
+	// lets each function's data tell the runtime which fields it reads,
+	// for the sentinel check (see runtime.Dispatch.sentinel)
+	static void addReadFields() throws NotFoundException, CannotCompileException {
+		Iterator i = readFields.keySet().iterator();
+		while (i.hasNext()) {
+			String name = (String) i.next();
+			CtConstructor data_const = pool.get(name).getDeclaredConstructors()[0];
+			data_const.insertAfter("{ reads = \"" + readFields.get(name) + "\"; }");
+		}
+	}
+	
+	static String funcId(String n) {
+		return n + "Id";
+	}
+	
+	static String dataName(CtClass c, CtMethod m) {
+		return c.getName() + "_" + m.getName() + "Data";
+	}
+	
+	// whether a field read in an invariant has to record a use
+	static boolean recordsUse(FieldAccess f, String func_id) {
+		if (! f.isReader() || f.isStatic())
+			return false;
+		try {
+			CtField gf = f.getField();
+			String pname = gf.getDeclaringClass().getPackageName(); 
+			// don't need to set used for stuff we've just added
+			if (gf.getName().equals(func_id) || 
+					(pname != null && pname.equals("runtime")))
+				return false;
+			if (isImmutable(gf)) {
+				if (verbose)
+					System.out.println("Plain read of immutable field " + gf.getName());
+				return false;
+			}
+			return true;
+		} catch (Exception e) {
+			System.out.println("Can't get field. " + e);
+			e.printStackTrace();
+			return false;
+		}
+	}
+	
+	// the main method that incrementalizes the invariant
+	static CtMethod instrumentInvariant(final CtMethod newm) throws 
+			CannotCompileException, NotFoundException {
+		final CtClass c = newm.getDeclaringClass();		
+		final String func_id = funcId(newm.getName());
+		final String data_name = dataName(c, newm);
+		if (verbose)
+			System.out.println("Incrementalizing " + newm.getLongName() + " step 2");
+		
+		// see if there is already info associated with this function
+		final InvariantInfo i = (InvariantInfo) methodsToInfo.get(newm);
+		// find all function calls to other invariants, and add the boolean parameter
+		newm.instrument(
+				new ExprEditor() {
+					int res = 0;
+					public void edit(MethodCall m) throws CannotCompileException {
+						if (isInvariant(m)) {
+							if (verbose)
+								System.out.println("Rewriting recursive invariant function call " + m.getMethodName());
+							CtMethod tocall = null;
+							try {
+								// can't just get the method directly because it no longer 
+								// exists with this signature (we replaced it in the previous step)
+								String mn = m.getMethodName();
+								tocall = pool.getMethod(c.getName(), mn);
+							} catch (Exception e) {
+								throw new CannotCompileException(e);
+							}
+							m.replace("{ $_ = $proceed($$, cachedValue, " + res++ + "); }");
+							
+							InvariantInfo i2 = (InvariantInfo) methodsToInfo.get(tocall);
+							// if this has no info and other does, this gets that one
+							if (i == null && i2 != null)
+								methodsToInfo.put(newm, i2);
+							// and vice versa
+							else if (i != null && i2 == null)
+								methodsToInfo.put(tocall, i);
+							// if neither has, we create a new one
+							else if (i == null && i2 == null) {
+								InvariantInfo newi = new Transform.InvariantInfo(newm.getName() + "InvId");
+								methodsToInfo.put(newm, newi);
+								methodsToInfo.put(tocall, newi);
+							// if they both have different ones, bug
+							} else if (i != i2) {
+								throw new CannotCompileException("Methods " + newm + " and " + tocall + 
+										" are recursive but are also in different invariants!");
+							}
+							
+						}
+					}
+		    });
+
+		// at the end check to see if the return value is the same as the memoized value
+		int kind = resultKind(newm.getReturnType());
+		String store = (kind == runtime.FunctionData.REF ? "cachedValue.result = $_; " : 
+			"cachedValue.value = " + toValue(kind, "$_") + "; cachedValue.computed = true; ");
+		newm.insertAfter("{ if (cachedValue != null) { " + store + "}}");
+		boolean rerouted = false;
+		// reroute all calls to this invariant to the runtime dispatch function
+		for (int q = 0 ; q < allClasses.size() ; q++) {
+			CtClass cl = pool.get((String)allClasses.get(q));
+			boolean thisReroute = rerouteInvariantCalls(newm, cl, func_id);
+			rerouted = rerouted || thisReroute;
+		}
+		
+		// since we cannot determine whether a new InvariantInfo was created 
+		// in the above ExprEditor without the use of a static variable,
+		// we refetch the mapped info to see whether it's been set
+		InvariantInfo ii = (InvariantInfo) methodsToInfo.get(newm);
+		boolean initializeInvData = false;
+		if (rerouted) {
+			if (i == null && ii.hasEntrypoint == true) {
+				throw new CannotCompileException("Method " + newm + " is called both externally and " + 
+						"internally by another invariant function that is also called externally and internally." +
+						" Each invariant can only have one entrypoint function.");
+			} else { 
+				ii.hasEntrypoint = true;
+				initializeInvData = true;
+			}
+		}
+		
+		try { 
+			c.getField(ii.name);
+		} catch (NotFoundException e) {
+			if (verbose)
+				System.out.println("Creating field name " + ii.name);
+			CtField f = new CtField(pool.get("runtime.InvariantData"), ii.name, c);
+			f.setModifiers(Modifier.PUBLIC);
+			c.addField(f);				
+		}
+
+		// modify the class constructor to get an id from dispatch
+		addSetIDToConstructors(c.getConstructors(), func_id, data_name, ii,
+				initializeInvData);
+		System.out.println("Incrementalizing " + newm.getLongName() + " step 2");
+		// find all field reads and set the used bit. a first pass finds 
+		// the reads that need it, so reads of an object some earlier read 
+		// has already recorded can be left plain
+		final ArrayList reads = new ArrayList();
+		newm.instrument(
+				new ExprEditor() {
+					public void edit(FieldAccess f) throws CannotCompileException {
+						if (recordsUse(f, func_id))
+							reads.add(Integer.valueOf(f.indexOfBytecode()));
+					}
+				});
+		final boolean[] coalesced = coalescedReads(newm, reads);
+		final StringBuffer read_names = new StringBuffer();
+		// TODO replace with inv_id!
+		final String replacer = "{ runtime.Dispatch.useMap("+ii.name+", $0, cachedValue); " +
+			" $_ = $proceed(); }";
+		
+		newm.instrument(
+				new ExprEditor() {
+					int read = 0;
+					public void edit(FieldAccess f) throws CannotCompileException {
+						if (recordsUse(f, func_id)) {
+							try {
+								CtField gf = f.getField();
+								if (coalesced[read++]) {
+									if (verbose)
+										System.out.println("Use of field " + gf.getName() + " already recorded");
+								} else
+									f.replace(replacer);
+								if (verbose)
+									System.out.println("Need to barrier object containing this field: " + gf.getName());
+								barrieredTypes.add(gf);
+								String read = gf.getDeclaringClass().getName() + "." + gf.getName();
+								if ((" " + read_names + " ").indexOf(" " + read + " ") == -1)
+									read_names.append(read_names.length() == 0 ? read : " " + read);
+							} catch (Exception e) {
+								System.out.println("Can't get field. " + e);
+								e.printStackTrace();
+							}
+						} 
+					}
+				});		
+		readFields.put(data_name, read_names.toString());
+		
+		return newm;
+	}
+	
 }
\ No newline at end of file
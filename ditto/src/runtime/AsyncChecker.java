@@ -0,0 +1,219 @@
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/*
+ * Background thread that runs incremental checks on behalf of mutator 
+ * threads. A mutator that calls an invariant hands the write logs of 
+ * all threads over with the request, so that writes from threads that 
+ * never call an invariant are seen too, and gets back the latest known
+ * result for the same function and arguments; the request is tagged 
+ * with a mutation epoch, one per check call. The checker owns the 
+ * computation graph: it alone drains the logs, runs doIncremental and 
+ * updates nodes.
+ *
+ * While the checker is running, barriers log every write, not only 
+ * writes to objects some node has used, because the use bits are 
+ * only up to date on the checker thread. So a write that races with 
+ * a check is always logged, and the check of the next epoch picks it 
+ * up. The check of one epoch may however see writes made after it 
+ * (or a structure in the middle of an update), so its result is only 
+ * guaranteed once the mutators are quiescent; later epochs correct it.
+ */
+
+package runtime;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+class AsyncChecker extends Thread {
+	int maxLag;
+	CheckListener listener;
+	ArrayDeque queue = new ArrayDeque();
+	// epochs handed out to and finished by the checker
+	long submitted, completed;
+	boolean stopping;
+	
+	static class Request {
+		FunctionData fd;
+		Object[] args;
+		// the chunks detached from each log, handed back once drained;
+		// the last chunk of a log holds counts[i] entries
+		WriteLog[] logs;
+		ArrayList[] chunks;
+		int[] counts;
+		long epoch;
+		boolean done;
+		Object result;
+		Throwable failure;
+		
+		boolean answers(FunctionData fd, Object[] args) {
+			return this.fd == fd && ObjArrayStrategy.sEquals(this.args, args);
+		}
+	}
+	
+	AsyncChecker(int maxLag, CheckListener listener) {
+		super("ditto-checker");
+		setDaemon(true);
+		this.maxLag = maxLag;
+		this.listener = listener;
+	}
+	
+	// called in place of a check, on a mutator thread. the writes of 
+	// every thread are taken, as Dispatch.distribute() would; the same 
+	// ordering of the other mutators' writes before the call applies
+	Object submit(FunctionData fd, Object[] args) {
+		Request r = new Request();
+		r.fd = fd;
+		r.args = args;
+		InvariantData d = fd.invariantData;
+		boolean interrupted = false;
+		Object res;
+		synchronized (this) {
+			// taken under the checker's lock, so that requests drain 
+			// the writes in the order of their epochs
+			detachAll(r);
+			r.epoch = ++submitted;
+			queue.add(r);
+			notifyAll();
+			// block while the checker lags too far behind, or while 
+			// there is no result for these arguments to hand back
+			while (! r.done && (submitted - completed > maxLag || d.lastDone == null || ! d.lastDone.answers(fd, args))) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (r.done) {
+				if (r.failure instanceof Error)
+					throw (Error) r.failure;
+				if (r.failure != null)
+					throw (RuntimeException) r.failure;
+				res = r.result;
+			} else
+				res = d.lastDone.result;
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		return res;
+	}
+	
+	static void detachAll(Request r) {
+		ArrayList logs = Dispatch.logs;
+		synchronized (logs) {
+			int n = logs.size();
+			r.logs = new WriteLog[n];
+			r.chunks = new ArrayList[n];
+			r.counts = new int[n];
+			for (int k = n ; k-- > 0 ; ) {
+				WriteLog l = (WriteLog) logs.get(k);
+				if (l.count > 0 || l.full.size() > 0) {
+					r.logs[k] = l;
+					r.counts[k] = l.count;
+					r.chunks[k] = l.detach();
+					l.count = 0;
+				}
+				// logs of finished threads have nothing more to give
+				if (! l.ownerAlive()) {
+					logs.remove(k);
+					if (Dispatch.primaryLog == l)
+						Dispatch.primaryLog = Dispatch.noLog;
+				}
+			}
+		}
+	}
+	
+	public void run() {
+		while (true) {
+			Request r;
+			synchronized (this) {
+				while (queue.isEmpty() && ! stopping) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// only finish() stops the checker
+					}
+				}
+				if (queue.isEmpty())
+					return;
+				r = (Request) queue.removeFirst();
+			}
+			Object res = null;
+			Throwable failure = null;
+			try {
+				for (int k = 0 ; k < r.logs.length ; k++) {
+					ArrayList chunks = r.chunks[k];
+					if (chunks == null)
+						continue;
+					for (int i = 0 ; i < chunks.size() ; i++) {
+						IncObject[] chunk = (IncObject[]) chunks.get(i);
+						int n = (i == chunks.size() - 1 ? r.counts[k] : chunk.length);
+						Dispatch.distribute(chunk, n);
+						r.logs[k].giveBack(chunk, n);
+					}
+				}
+				r.logs = null;
+				r.chunks = null;
+				res = Dispatch.doIncremental(r.fd, r.args);
+			} catch (Throwable t) {
+				if (Dispatch.DEBUG)
+					t.printStackTrace();
+				failure = t;
+			}
+			synchronized (this) {
+				r.done = true;
+				r.failure = failure;
+				r.result = res;
+				if (failure == null)
+					r.fd.invariantData.lastDone = r;
+				completed = r.epoch;
+				notifyAll();
+			}
+			if (listener != null) {
+				if (failure == null)
+					listener.checked(r.fd, r.args, res, r.epoch);
+				else
+					listener.failed(r.fd, r.args, failure, r.epoch);
+			}
+		}
+	}
+	
+	// lets the checker work off its queue, then stops it
+	void finish() {
+		synchronized (this) {
+			stopping = true;
+			notifyAll();
+		}
+		boolean interrupted = false;
+		while (isAlive()) {
+			try {
+				join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+}
@@ -1,501 +1,1020 @@
-/* 
-Copyright (c) 2007, AJ Shankar
-
-All rights reserved.
-
-Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
-
-    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
-    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
-    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
-
-THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
-"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
-LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
-A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
-CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
-EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
-PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
-PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
-LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
-NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
-SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
-*/
-
-/**
- * Primary runtime class for Ditto. Includes functions for fetching
- * memoized nodes frmo the graph, storing heap object->node usages, 
- * and rerunning invariants incrementally, in the main doIncremental function.
- */
-
-package runtime;
-import org.apache.commons.collections.buffer.BoundedFifoBuffer;
-import gnu.trove.THashSet;
-
-import java.util.*;
-
-/**
- * @author aj
- *
- */
-public class Dispatch {
-	public static final int ignoreArgs = 2;
-	public static final boolean DEBUG = false;
-	static int maxInvariant;
-	static int maxFunction;
-	public static int count;
-	public static int invCount;
-  public static IncObject[] written = new IncObject[1000];
-  static ArrayList invariants = new ArrayList();
-  static ArrayList functions = new ArrayList();
-  //static THashSet remove_nodes = new THashSet(new ObjStrategy());
-  static ArrayList remove_nodes = new ArrayList();
-  static THashSet rerun_nodes = new THashSet(new ObjStrategy());
-  static ArrayList differing_nodes = new ArrayList();
-  static BoundedFifoBuffer worklist_nodes = new BoundedFifoBuffer();
-  static ArrayList affected_nodes = new ArrayList();
-  static ComputationNode dummy = new ComputationNode(null, null);
-  
-  // when an object is created, it registers its invariants
-  public static FunctionData registerFunction(FunctionData d) {
-  	if (DEBUG)
-  		System.out.println("Function registered!");
-  	functions.add(d);
-  	if (maxFunction >= Integer.SIZE) {
-  		System.out.println("Too many invariants have been registered. " +
-  				"Either change the type of IncObject.used to a long or find another solution.");
-  		System.exit(1);
-  	}
-
-  	d.id = maxFunction++;
-  	return d;
-  }
-  
-  public static InvariantData registerInvariant(InvariantData d) {
-  	if (DEBUG)
-  		System.out.println("Invariant registered!");
-  	invariants.add(d);
-  	d.id = maxInvariant++;
-  	return d;
-  }
-  
-  // when an invariant is to be run, the write barrier list 
-  // (written) is cleared out, and its locations forwarded
-  // to all interested invariants
-	public static void distribute() {
-		for (int i = 0 ; i < count ; i++) {
-			IncObject w = written[i];
-			long ch = w.used;
-			long id = 1;
-			for (int j = 0 ; j < maxInvariant ; j++) {
-				if ((ch & id) > 0) {
-					((InvariantData) invariants.get(j)).waiting.add(w);
-		    }
-				id <<= 1;
-			}
-			w.used = 0;
-		}
-		count = 0;
-	}
-	
-	public static ComputationNode getMemoized(FunctionData d, Object[] args, 
-			ComputationNode parent, int slot) {
-		if (DEBUG)
-			System.out.println("Got to getMemoized with parent "+ (parent == null ? "null" : parent.ptrString()) + " and args " + args[0]);
-		ComputationNode res = null;
-		// leaf-node optimization
-		 
-//		for (int i = args.length - ignoreArgs ; i-- > 0; ) {
-//			if (args[i] != null) {
-//				end_early = false;
-//				break;
-//			}
-//		}
-/* 		if (args[0] == null && args[1] == null) {
-			if (d.nullNode == null) {
-				if (DEBUG)
-					System.out.println("Computing nullNode");
-				d.nullNode = new ComputationNode(args);
-			}
-			if (parent != null)
-				ComputationNode.addEdge(parent, d.nullNode, true);
-			return d.nullNode;
-		}
-*/ 
-		res = (ComputationNode) d.memo.get(args);
-		if (res == null) {
-			res = new ComputationNode(args, d);
-			if (DEBUG) {
-				System.out.println("Couldn't find; adding node " + res + " with args " + args + " and hash value " + 
-						ObjArrayStrategy.hash(args) + " first arg hash is " + (args[0] == null ? "null " : args[0].hashCode()));
-				res.printArguments();
-			}
-			d.memo.put(args, res);
-		} else if (res.dirty) {
-			if (DEBUG)
-				System.out.println("Reusing dirty node " + res.ptrString());
-			res.removeUselocs(d.invariantData);
-			res.result = null;
-			res.dirty = false;
-
-			for (int l = 0 ; l < res.children.length ; l++) {
-				ComputationNode child = res.children[l];
-				if (child == null) continue;
-				if (DEBUG)
-					System.out.println("Removing edge " + res.ptrString() + " to " + child.ptrString());
-				ComputationNode.removeEdge(res, child, l);
-				if (child.num_parents == 0)
-					remove_nodes.add(child);
-			}
-			res.depth = Integer.MAX_VALUE;
-		} else {
-			if (DEBUG)
-				System.out.println("Found existing memoized version " + res.ptrString());
-			//res.arguments = args;
-		}
-
-		if (parent == null) {
-			if (DEBUG)
-				System.out.println("Setting computation tree");
-			// explicitly remove parents
-			for (int i = 0 ; i < res.parents_last ; i++) {
-				ComputationNode n = res.parents[i];
-				if (n == null) continue;
-				if (DEBUG)
-					System.out.println("Explicitly removing edge " + n.ptrString() + " to " + res);
-				ComputationNode.removeEdge(n, res, -1);
-				//if (n.num_children == 0 && n.num_parents == 0)
-					//remove_nodes.add(n);
-			}
-			if (d.invariantData.graphRoot == null)
-				res.depth = 0;
-			d.invariantData.graphRoot = res;
-		} else {
-			if (parent != dummy) {
-				if (DEBUG)
-					System.out.println("Adding edge from " + parent.ptrString() + " to " + res.ptrString()); 
-				ComputationNode.addEdge(parent, res, slot);
-
-			}
-		}
-		return res;
-	}
-	
-	public static String ptr(Object o) {
-		return Integer.toHexString(System.identityHashCode(o));		
-	}
-	
-	static Object oldo;
-	static ComputationNode oldcn;
-	public static void useMap(InvariantData d, Object o, ComputationNode cn) {
-		int id = d.id;
-		if (DEBUG)
-			System.out.println("At usemap with id " + id + " and object " + o + " at " + ptr(o) + " and " + cn);
-		if (o == oldo && cn == oldcn) return;
-		IncObject op = (IncObject) o;
-
-		ArrayList a = op.lists[id];
-		if (a == null) {
-			a = new ArrayList();
-			op.lists[id] = a;
-		}
-		//if (! a.contains(cn)) { // turns out it's faster to keep the dupes
-			a.add(cn);
-			cn.uselocs.add(o);
-		//}
-		oldo = o ; oldcn = cn;
-		op.used = op.used | (1 << id);
-	}
-	
-	public static Object doIncremental(FunctionData fd, Object[] args) {
-		if (DEBUG)
-			System.out.println("- DoIncremental invoked for funcid " + fd);
-		if (count > 0)
-			distribute();
-
-		InvariantData d = (InvariantData) fd.invariantData;
-		ArrayList waiting = d.waiting;
-		if (DEBUG) {
-			System.out.println("Number of elements waiting: " + waiting.size());
-			for (int q = 0 ; q < waiting.size() ; q++) {
-				System.out.println("Element " + q + ": " + waiting.get(q) + " at " + ptr(waiting.get(q)));
-			}
-		}
-		if (d.graphRoot == null) {
-			if (DEBUG)
-				System.out.println("Never been run; restarting");
-			Object o = fd.run(args, null);
-			if (DEBUG)
-				System.out.println("Restarted value is " + o);
-			return o;
-		} 
-		
-		ComputationNode first = d.graphRoot;
-		//System.out.println("First node " + first + " result is " + first.result + " and children is " + first.num_children);
-		boolean redo_first = ! ObjArrayStrategy.sEquals(first.arguments, args);
-		if (DEBUG && redo_first)
-			System.out.println("Initial arguments differ");
-		
-		affected_nodes.clear();
-
-		// first step: figure out what computation nodes are affected 
-		// by the written locations
-		for (int i = 0 ; i < waiting.size() ; i++) {
-			Object o = waiting.get(i);
-			if (DEBUG)  
-				System.out.println("Waiting object detected: " + o + 
-						" with hash value " + o.hashCode());
-			IncObject op = (IncObject) o;
-			ArrayList this_used = op.lists[d.id];
-			if (DEBUG)
-				System.out.println("Number of nodes affected is " + this_used.size());
-			for (int y = this_used.size() ; y-- > 0 ; ) { 
-				ComputationNode cn = (ComputationNode) this_used.get(y);
-				if (! cn.dirty) {
-					cn.dirty = true;
-					if (DEBUG)
-						System.out.println("Marking as dirty " + cn.ptrString());
-					affected_nodes.add(cn);
-				} else {
-					if (DEBUG)
-						System.out.println("Already seen node!");
-				}
-			}
-			op.lists[d.id].clear();
-		}
-		
-		waiting.clear();
-		
-		if (DEBUG)
-			System.out.println("Number of nodes is " + affected_nodes.size());
-
-		// initial arguments match, no nodes changed: just return old result
-		if (affected_nodes.size() == 0 && ! redo_first)
-			return d.graphRoot.result;
-		
-		int s = affected_nodes.size();
-		// TODO now, sort affected by distance from root
-		for (int m = 0 ; m < s-1 ; m++) {
-			int min = ((ComputationNode) affected_nodes.get(m)).depth, min_idx = 0;
-			for (int n = m+1 ; n < s ; n++) {
-				ComputationNode node = (ComputationNode) affected_nodes.get(n);
-				if (node.depth < min) {
-					min = node.depth;
-					min_idx = n;
-				}
-			}
-			Object foo = affected_nodes.get(m);
-			if (min_idx != 0) {
-				affected_nodes.set(m, affected_nodes.get(min_idx));
-				affected_nodes.set(min_idx, foo);
-			}
-		}
-		
-//		rerun_nodes.clear();
-		remove_nodes.clear();
-		differing_nodes.clear();
-
-		if (redo_first) {
-			if (DEBUG)
-				System.out.println("Explicitly rerunning first");
-			fd.run(args, null);
-			// if the first node has been replaced, prune it
-			if (first != d.graphRoot) {
-				if (first.num_parents == 0)
-					remove_nodes.add(first);
-					//first.prune(d);
-				first = d.graphRoot;
-			}
-		}
-
-		for (int i = 0 ; i < s ; i++) {
-			ComputationNode n = (ComputationNode) affected_nodes.get(i);
-			//remove_nodes.clear();
-			if (n.num_parents == 0 && n != d.graphRoot) {
-				//if (DEBUG)
-				//  System.out.println("Found one to prune " + n.ptrString());
-				//n.printArguments();
-				//n.prune(d);
-				remove_nodes.add(n);
-			} else if (n.dirty) {
-				// if we find a node with dirty parents, skip it;
-				// it will be rerun when the parents are rerun.
-				if (n != d.graphRoot) {
-					boolean bail = true;
-					for (int gz = 0 ; gz < n.parents_last ; gz++) {
-						ComputationNode p = n.parents[gz];
-						if (p != null && !p.dirty)
-							bail = false;
-					}
-					if (bail) continue;
-				}
-				for (int l = 0 ; l < n.children.length ; l++) {
-					ComputationNode child = n.children[l];
-					if (child == null) continue;
-					if (DEBUG)
-						System.out.println("Removing edge " + n.ptrString() + " to " + child.ptrString());
-					ComputationNode.removeEdge(n, child, l);
-					if (child.num_parents == 0) {
-						if (DEBUG)
-							System.out.println("Adding child to remove nodes ");
-						remove_nodes.add(child);
-					}
-				}
-				if (DEBUG)
-					System.out.println("Running on node " + n.ptrString());
-				if (n == first && redo_first)
-					continue;
-
-				if (! runNode(n)) {
-					if (DEBUG)
-						System.out.println("Found differing result for " + n.ptrString());
-					differing_nodes.add(n);
-				}
-				n.dirty = false;
-				//				for (int l = 0 ; l < remove_nodes.size() ; l++) {
-//					ComputationNode child = (ComputationNode) remove_nodes.get(l);
-//					if (DEBUG)
-//					System.out.println("Checking child " + child.ptrString() + " for pruning");
-//					if (child.num_parents == 0)
-//						child.prune(d);
-//				}
-			}
-		}
-	
-		// finally, recompute differing nodes
-		if (differing_nodes.size() > 0) {
-			worklist_nodes.clear();
-			for (int w = 0 ; w < differing_nodes.size() ; w++) {
-				ComputationNode foo = (ComputationNode) differing_nodes.get(w);
-				// if we don' have any parents for this node, we have to abort and rerun 
-
-				for (int x = 0 ; x < foo.parents_last ; x++) {
-					ComputationNode bar = foo.parents[x];
-					if (bar == null) continue;
-					
-					// only mark and add if hasn't already been done
-					if (! worklist_nodes.contains(bar)) {
-						markPathsToRoot(bar, 1);
-						worklist_nodes.add(bar);
-					}
-				}
-			}
-			boolean had_to_rerun = recomputeDiffering(worklist_nodes);
-			// if a noparent node forced a full recomputation, skip the final step
-			if (had_to_rerun)
-				return d.graphRoot.result;
-		}
-
-		
-		if (DEBUG)
-			System.out.println("num to prune is " + remove_nodes.size());
-		int pruned = 0;
-		for (int l = 0 ; l < remove_nodes.size() ; l++) {
-			ComputationNode child = (ComputationNode) remove_nodes.get(l);
-			if (DEBUG)
-				System.out.println("Checking child " + child.ptrString() + " for pruning");
-
-			if (child.num_parents == 0) {
-				pruned += child.prune();
-			}
-		}
-		if (DEBUG)
-			System.out.println("num pruned is " + pruned);
-
-		//System.out.println("- Done with doIncremental");
-		return d.graphRoot.result;
-	}
-
-  private static boolean runNode(ComputationNode newcn) {
-	  Object oldres = newcn.result;
-	  //System.out.println("* Running on new node");
-	  //newcn.printArguments();
-	  Object res = newcn.data.run(newcn.arguments, 
-	  		newcn == newcn.data.invariantData.graphRoot ? null : dummy);
-	  boolean same = res.equals(oldres);
-	  if (DEBUG && ! same)
-	  	System.out.println("Old result was " + oldres+ " and new result is " + res);
-	  return (same);
-  }
-	
-	static void markPathsToRoot(ComputationNode n, int mark) {
-		if (n == null)
-			return;
-		boolean return_early = false;
-		if ((n.recompute > 0 && mark == 1) || (n.recompute > 1 && mark == -1)) {
-			return_early = true;
-		}
-		n.recompute += mark;
-		if (DEBUG)
-			System.out.println("Marking paths to root for " + n.ptrString() + " with result " + n.result + 
-					" and recompute " + n.recompute);		
-
-		if (return_early) {
-			if (DEBUG)
-				System.out.println("Stopping mark here");
-			return;
-		}
-		for (int i = 0 ; i < n.parents_last ; i++) {
-			ComputationNode node = n.parents[i];
-			if (node == null) continue;
-			markPathsToRoot(node, mark);
-		}
-	}
-	
-	static boolean recomputeDiffering(BoundedFifoBuffer worklist) {
-		if (DEBUG)
-			System.out.println("Processing differing nodes " + worklist.size());
-		while (worklist.size() > 0) {
-			ComputationNode c = (ComputationNode) worklist.remove();
-			
-			c.recompute--;
-			if (c.recompute == 0) {
-				if (DEBUG)
-					System.out.println("Recomputing difference for " + c.ptrString() + " old result " + c.result);
-				// if result differs, parents need to be recomputed too
-				c.dirty = true;
-				Object oldres = c.result;
-				if (DEBUG) {
-					for (int i = 0 ; i < c.children.length ; i++) {
-						ComputationNode child = c.children[i];
-						if (child != null)
-							System.out.println("Child (" + i + ") " + child.ptrString() + " result is " + child.result);
-					}
-				}
-				c.result = c.data.runOnce(c.arguments, c.children);
-				//System.out.println("Old was " + oldres + " and new is "  + c.result);
-				if (! c.result.equals(oldres)) {
-					if (DEBUG)
-						System.out.println("Different result: " + c.result + "; adding parents again");
-
-					if (c.noparent) {
-						if (DEBUG)
-							System.out.println("Noparent differs; rerunning entire invariant");
-						ComputationNode root = c.data.invariantData.graphRoot;
-						Object o = root.data.run(root.arguments, null);
-						if (DEBUG)
-							System.out.println("Restarted value is " + o);
-						return true;
-					}
-					
-					for (int i = 0 ; i < c.parents_last ; i++) { 
-						if (c.parents[i] != null) {
-							if (DEBUG)
-								System.out.println("Added parent " + c.parents[i].ptrString());
-							worklist.add(c.parents[i]);
-						}
-					}
-				}	else {
-					if (DEBUG)
-						System.out.println("Found same result; stopping upchain");
-					c.recompute++; // just so c.recompute is set back to 0 by markPaths
-					markPathsToRoot(c, -1);
-				}
-				//System.out.println("Done recomputing difference");
-				c.dirty = false;
-			}
-		}
-		//System.out.println("Done with all differing");
-		return false;
-	}
-}
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/**
+ * Primary runtime class for Ditto. Includes functions for fetching
+ * memoized nodes frmo the graph, storing heap object->node usages, 
+ * and rerunning invariants incrementally, in the main doIncremental function.
+ */
+
+package runtime;
+import gnu.trove.THashSet;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * @author aj
+ *
+ */
+public class Dispatch {
+	public static final int ignoreArgs = 2;
+	public static final boolean DEBUG = false;
+	static int maxInvariant;
+	static int maxFunction;
+	public static int invCount;
+  // per-thread write barrier logs, drained by distribute()
+  static ArrayList logs = new ArrayList();
+  static ThreadLocal threadLog = new ThreadLocal() {
+  	protected Object initialValue() {
+  		WriteLog l = new WriteLog(Thread.currentThread());
+  		synchronized (logs) {
+  			logs.add(l);
+  		}
+  		return l;
+  	}
+  };
+  // the log of the first thread to log a write, which the barrier 
+  // finds without the ThreadLocal lookup; until then, and once that 
+  // thread has finished, a log no thread owns. only the other threads
+  // change it, so in the common case of one mutator it is never 
+  // written, and with more they do not write it on every barrier
+  static final WriteLog noLog = new WriteLog(null);
+  static WriteLog primaryLog = noLog;
+  // registered invariants by id, and registered functions. both are 
+  // held weakly, so a data structure the application drops takes its 
+  // functions, invariant and graph with it; the registrations the 
+  // collector clears are expunged by distribute(). invariants is 
+  // replaced rather than grown in place, since the checker thread 
+  // reads it without locking.
+  static volatile Registration[] invariants = new Registration[8];
+  static ArrayList functions = new ArrayList();
+  static ReferenceQueue released = new ReferenceQueue();
+  
+  static final class Registration extends WeakReference {
+  	final int id;
+  	final boolean invariant;
+  	Registration(Object o, int id, boolean invariant) {
+  		super(o, released);
+  		this.id = id;
+  		this.invariant = invariant;
+  	}
+  }
+  // thrown by a runOnce copy that needs the result of a call its node 
+  // did not make when it last ran, because the new results of its 
+  // children send it down another path. the node is rerun instead; 
+  // see recomputeDiffering. there is one instance, without a stack trace
+  static final class MissingChild extends RuntimeException {
+  	private static final long serialVersionUID = 2811658735226593367L;
+  	MissingChild() {
+  		super(null, null, false, false);
+  	}
+  }
+  static final MissingChild missingChild = new MissingChild();
+  //static THashSet remove_nodes = new THashSet(new ObjStrategy());
+  static ArrayList remove_nodes = new ArrayList();
+  static THashSet rerun_nodes = new THashSet(new ObjStrategy());
+  static ArrayList differing_nodes = new ArrayList();
+  static NodeScheduler dirty_nodes = new NodeScheduler(false);
+  static NodeScheduler propagate_nodes = new NodeScheduler(true);
+  static ArrayList affected_nodes = new ArrayList();
+  static ComputationNode dummy = new ComputationNode(null, null);
+  // minimum number of differing nodes before results are propagated up 
+  // the graph on a ForkJoin pool; 0 keeps propagation on the caller thread
+  public static int parallelThreshold = Integer.getInteger("ditto.parallel", 0).intValue();
+  // pruned nodes each function keeps to reuse for new ones; 0 keeps none.
+  // reuse saves allocating a node and its arrays when the graph keeps 
+  // changing shape, but reused nodes lie scattered about the heap, away
+  // from their neighbours in the graph, and passes over them can lose 
+  // more than the allocation saves; see FunctionData.newNode
+  public static int recycleNodes = Integer.getInteger("ditto.recycle", 0).intValue();
+  // default node budget of each invariant; see InvariantData.budget
+  public static int nodeBudget = Integer.getInteger("ditto.budget", 0).intValue();
+  // whether a check may run the invariant from scratch when that looks 
+  // cheaper than an incremental pass; see update(). off unless asked 
+  // for with -Dditto.fallback=true, since the writes then pile up for 
+  // the pass that eventually catches up
+  public static boolean fallback = Boolean.getBoolean("ditto.fallback");
+  // how many times dearer than a scratch run a pass has to look for 
+  // the scratch run to be chosen
+  static final double FALLBACK_MARGIN = 2;
+  // fraction of the heap that may stay in use after a collection 
+  // before graphs are dropped; 0 leaves them be. see MemoryPressure
+  public static double pressureLevel = Double.parseDouble(System.getProperty("ditto.pressure", "0"));
+  // nesting depth of beginBatch() calls, and the checks deferred 
+  // until the outermost endBatch(), as (function, arguments) pairs
+  static int batchDepth;
+  static ArrayList batched = new ArrayList();
+  // outermost batches ended so far
+  static long batches;
+  // the background checker, while asynchronous checking is on
+  static volatile AsyncChecker checker;
+  // makes the barriers log every write; read by the generated barriers
+  public static boolean logAll;
+  // whether each check makes sure that no sentinel has changed a field 
+  // an invariant reads; see sentinel()
+  public static boolean checkSentinels = Boolean.getBoolean("ditto.checkSentinels");
+  // the sentinels, each with the values of its fields when it was 
+  // declared, by "class.field" name; only kept while checkSentinels is on
+  static ArrayList sentinels = new ArrayList();
+  
+  // when an object is created, it registers its invariants
+  public static FunctionData registerFunction(FunctionData d) {
+  	if (DEBUG)
+  		System.out.println("Function registered!");
+  	synchronized (functions) {
+  		d.id = maxFunction++;
+  		functions.add(new Registration(d, d.id, false));
+  	}
+  	return d;
+  }
+  
+  public static InvariantData registerInvariant(InvariantData d) {
+  	if (DEBUG)
+  		System.out.println("Invariant registered!");
+  	synchronized (functions) {
+  		d.id = maxInvariant++;
+  		Registration[] regs = invariants;
+  		if (d.id == regs.length) {
+  			Registration[] nr = new Registration[regs.length * 2];
+  			System.arraycopy(regs, 0, nr, 0, regs.length);
+  			regs = nr;
+  		}
+  		regs[d.id] = new Registration(d, d.id, true);
+  		invariants = regs;
+  	}
+  	if (pressureLevel > 0)
+  		MemoryPressure.watch();
+  	return d;
+  }
+  
+  // the invariant with the given id, or null if it has been collected
+  static InvariantData invariant(int id) {
+  	Registration r = invariants[id];
+  	return (r == null ? null : (InvariantData) r.get());
+  }
+  
+  // the functions still registered
+  static ArrayList liveFunctions() {
+  	ArrayList live = new ArrayList();
+  	synchronized (functions) {
+  		for (int i = 0 ; i < functions.size() ; i++) {
+  			Object fd = ((Reference) functions.get(i)).get();
+  			if (fd != null)
+  				live.add(fd);
+  		}
+  	}
+  	return live;
+  }
+  
+  // drops the registrations of functions and invariants 
+  // that have been collected
+  static void expunge() {
+  	Registration r = (Registration) released.poll();
+  	if (r == null)
+  		return;
+  	synchronized (functions) {
+  		for ( ; r != null ; r = (Registration) released.poll()) {
+  			if (DEBUG)
+  				System.out.println("Releasing " + (r.invariant ? "invariant " : "function ") + r.id);
+  			if (r.invariant)
+  				invariants[r.id] = null;
+  			else
+  				functions.remove(r);
+  		}
+  	}
+  }
+  
+  // declares o a sentinel: an object shared by the structures, like 
+  // TreeMap's nil, whose fields read by invariants hold the same 
+  // values at every check. reads of it are not recorded, so writes to
+  // it dirty nothing, and a call whose arguments are all sentinels or
+  // null can become a constant leaf (see ComputationNode.makeConstant).
+  // nothing can tell from the code that a field keeps its value (nil's
+  // color is written, with the value it has), so the declaration is 
+  // trusted; -Dditto.checkSentinels=true has every check verify it
+  public static void sentinel(Object o) {
+  	((IncObject) o).sentinel = true;
+  	if (checkSentinels) {
+  		HashMap values = new HashMap();
+  		for (Class c = o.getClass() ; c != IncObject.class ; c = c.getSuperclass()) {
+  			Field[] fs = c.getDeclaredFields();
+  			for (int i = 0 ; i < fs.length ; i++) {
+  				if (Modifier.isStatic(fs[i].getModifiers()))
+  					continue;
+  				fs[i].setAccessible(true);
+  				values.put(c.getName() + "." + fs[i].getName(), new Object[] { fs[i], fieldValue(fs[i], o) });
+  			}
+  		}
+  		synchronized (sentinels) {
+  			sentinels.add(new Object[] { o, values });
+  		}
+  	}
+  }
+  
+  static Object fieldValue(Field f, Object o) {
+  	try {
+  		return f.get(o);
+  	} catch (IllegalAccessException e) {
+  		throw new IllegalStateException(e.toString());
+  	}
+  }
+  
+  // throws if a field that a registered function reads has changed 
+  // in a sentinel since it was declared
+  static void checkSentinels() {
+  	ArrayList live = liveFunctions();
+  	synchronized (sentinels) {
+  		for (int i = 0 ; i < live.size() ; i++) {
+  			String reads = ((FunctionData) live.get(i)).reads;
+  			if (reads == null || reads.length() == 0)
+  				continue;
+  			String[] names = reads.split(" ");
+  			for (int j = 0 ; j < sentinels.size() ; j++) {
+  				Object[] s = (Object[]) sentinels.get(j);
+  				HashMap values = (HashMap) s[1];
+  				for (int k = 0 ; k < names.length ; k++) {
+  					Object[] fv = (Object[]) values.get(names[k]);
+  					if (fv == null)
+  						continue;
+  					Field f = (Field) fv[0];
+  					Object now = fieldValue(f, s[0]);
+  					if (f.getType().isPrimitive() ? ! now.equals(fv[1]) : now != fv[1])
+  						throw new IllegalStateException("Sentinel " + ptr(s[0]) + " has changed its field " + 
+  								names[k] + " from " + fv[1] + " to " + now);
+  				}
+  			}
+  		}
+  	}
+  }
+  
+  // called by the write barriers that Transform inserts; 
+  // each thread appends to its own log, so barriers never contend.
+  // for the primary thread the fast path is a compare of the current
+  // thread, a compare against the chunk size, a store and an increment
+  public static void logWrite(IncObject o) {
+  	WriteLog l = primaryLog;
+  	if (l.thread != Thread.currentThread())
+  		l = otherLog();
+  	if (l.count == WriteLog.CHUNK_SIZE)
+  		l.spill();
+  	l.written[l.count++] = o;
+  }
+  
+  static WriteLog otherLog() {
+  	WriteLog l = (WriteLog) threadLog.get();
+  	if (primaryLog == noLog)
+  		primaryLog = l;
+  	return l;
+  }
+  
+  // suspends incremental checking until the matching endBatch().
+  // inside a batch, an invariant call only forwards the logged writes
+  // to the invariants and returns the result of that invariant's last 
+  // check (the first call still runs it, to build the graph), so the 
+  // result is stale: it does not reflect writes made since then. 
+  // the calls are remembered, and endBatch() runs one incremental pass 
+  // for each distinct one, over all writes made during the batch.
+  // batches nest; only the outermost endBatch() checks.
+  public static void beginBatch() {
+  	batchDepth++;
+  }
+  
+  // ends a batch, and returns the deferred checks that came out false,
+  // each as a (function, arguments) array; the results of non-boolean 
+  // invariants are not returned (see endBatch(CheckListener)). a check 
+  // that throws ends the batch there; the remaining deferred checks 
+  // catch up on their next call
+  public static ArrayList endBatch() {
+  	return endBatch(null);
+  }
+  
+  // same, but also hands the result of every deferred check to l, and 
+  // what a throwing check threw, in which case the rest still run. the
+  // epoch given is the number of outermost batches ended so far
+  public static ArrayList endBatch(CheckListener l) {
+  	if (batchDepth == 0)
+  		throw new IllegalStateException("endBatch() without beginBatch()");
+  	ArrayList failing = new ArrayList();
+  	if (--batchDepth > 0)
+  		return failing;
+  	Object[] pending = batched.toArray();
+  	batched.clear();
+  	long epoch = ++batches;
+  	for (int i = 0 ; i < pending.length ; i += 2) {
+  		FunctionData fd = (FunctionData) pending[i];
+  		Object[] args = (Object[]) pending[i + 1];
+  		Object result;
+  		try {
+  			result = doIncremental(fd, args);
+  		} catch (RuntimeException e) {
+  			if (l == null)
+  				throw e;
+  			l.failed(fd, args, e, epoch);
+  			continue;
+  		}
+  		if (Boolean.FALSE.equals(result))
+  			failing.add(new Object[] { fd, args });
+  		if (l != null)
+  			l.checked(fd, args, result, epoch);
+  	}
+  	return failing;
+  }
+  
+  public static boolean inBatch() {
+  	return batchDepth > 0;
+  }
+  
+  static void deferCheck(FunctionData fd, Object[] args) {
+  	for (int i = 0 ; i < batched.size() ; i += 2) {
+  		if (batched.get(i) == fd && ObjArrayStrategy.sEquals((Object[]) batched.get(i + 1), args))
+  			return;
+  	}
+  	batched.add(fd);
+  	batched.add(args);
+  }
+  
+  // switches to asynchronous checking: from now on an invariant call 
+  // hands the write logs of all threads to a background checker and 
+  // returns the latest result the checker has for the same function 
+  // and arguments, blocking only if there is none yet or if the 
+  // checker is more than maxLag epochs behind. every check call is one
+  // epoch; its outcome goes to the listener, tagged with that epoch. 
+  // as with distribute(), the other mutators' writes must be ordered 
+  // before the call.
+  // batches do not apply in this mode. must be called before the 
+  // mutator threads start writing, or by the only one that does.
+  public static synchronized void startAsync(int maxLag, CheckListener listener) {
+  	if (checker != null)
+  		throw new IllegalStateException("asynchronous checking already on");
+  	distribute();
+  	logAll = true;
+  	AsyncChecker c = new AsyncChecker(maxLag, listener);
+  	c.start();
+  	checker = c;
+  }
+  
+  // waits for the checker to finish the outstanding checks and returns
+  // to checking on the calling thread. the mutators must be quiescent.
+  public static synchronized void stopAsync() {
+  	AsyncChecker c = checker;
+  	if (c == null)
+  		return;
+  	c.finish();
+  	checker = null;
+  	logAll = false;
+  }
+  
+  // how many registered functions have not been collected yet
+  public static int numFunctions() {
+  	return liveFunctions().size();
+  }
+  
+  // memo table statistics of every registered function, one per line
+  public static String memoStats() {
+  	StringBuffer b = new StringBuffer();
+  	ArrayList live = liveFunctions();
+  	for (int i = 0 ; i < live.size() ; i++) {
+  		FunctionData fd = (FunctionData) live.get(i);
+  		b.append(fd.getClass().getName() + ": " + fd.memo.stats() + 
+  				(fd.reused == 0 ? "" : ", " + fd.reused + " nodes reused") + "\n");
+  	}
+  	Registration[] regs = invariants;
+  	for (int i = 0 ; i < regs.length ; i++) {
+  		InvariantData d = (regs[i] == null ? null : (InvariantData) regs[i].get());
+  		if (d != null)
+  			b.append("invariant " + i + ": " + d.nodes + " nodes, " + d.uses + "; " + d.passes + 
+  					" passes at " + (int) d.passCost() + " ns per node of work, " + d.scratchRuns + 
+  					" scratch runs at " + (int) d.scratchCost() + " ns per node" + 
+  					(d.drops == 0 ? "" : "; dropped " + d.drops + " times" + (d.dropped ? ", now too" : "")) + "\n");
+  	}
+  	return b.toString();
+  }
+  
+  // when an invariant is to be run, the write barrier logs of
+  // all threads are cleared out, and their locations forwarded
+  // to all interested invariants.
+  // as with the invariant itself, the application must order the
+  // mutators' writes before the check (e.g. by holding the lock
+  // that guards the data structure).
+	public static void distribute() {
+		expunge();
+		if (checkSentinels)
+			checkSentinels();
+		synchronized (logs) {
+			for (int k = logs.size() ; k-- > 0 ; ) {
+				WriteLog l = (WriteLog) logs.get(k);
+				ArrayList full = l.full;
+				for (int c = 0 ; c < full.size() ; c++) {
+					IncObject[] chunk = (IncObject[]) full.get(c);
+					distribute(chunk, chunk.length);
+					l.recycle(chunk);
+				}
+				full.clear();
+				distribute(l.written, l.count);
+				// the current chunk stays in use, so clear what it logged
+				// rather than keep those objects reachable
+				Arrays.fill(l.written, 0, l.count, null);
+				l.count = 0;
+				// logs of finished threads have nothing more to give
+				if (! l.ownerAlive()) {
+					logs.remove(k);
+					if (primaryLog == l)
+						primaryLog = noLog;
+				}
+			}
+		}
+	}
+	
+	static void distribute(IncObject[] written, int count) {
+		for (int i = 0 ; i < count ; i++) {
+			IncObject w = written[i];
+			long ch = w.used;
+			if (ch == 0)
+				continue;
+			w.used = 0;
+			// each set bit stands for the invariants whose id is congruent
+			// to it mod 64; only those that have used w get it forwarded
+			while (ch != 0) {
+				int bit = Long.numberOfTrailingZeros(ch);
+				ch &= ch - 1;
+				for (int s = 0 ; s < w.numSlots ; s++) {
+					int id = w.slotIds[s];
+					if ((id & 63) != bit || w.heads[s] == EdgePool.NIL)
+						continue;
+					InvariantData d = invariant(id);
+					if (d != null)
+						d.waiting.add(w);
+					else {
+						w.heads[s] = EdgePool.NIL;
+						w.counts[s] = 0;
+					}
+				}
+			}
+		}
+	}
+	
+	// the arguments are in d.memo's probe; they are only copied 
+	// into an array when a new node has to be made for them
+	public static ComputationNode getMemoized(FunctionData d, 
+			ComputationNode parent, int slot) {
+		if (DEBUG)
+			System.out.println("Got to getMemoized with parent "+ (parent == null ? "null" : parent.ptrString()));
+		ComputationNode res = null;
+		Memo memo = d.memo;
+		res = memo.find();
+		if (res == null) {
+			res = d.newNode();
+			res.maybeConstant = constantArguments(res.arguments);
+			res.epoch = ++useEpoch;
+			memo.insert(res);
+			d.invariantData.nodes++;
+			work++;
+			// a new node goes right after its parent, 
+			// and its own new children right after it
+			if (parent == null || parent == dummy)
+				d.invariantData.order.insertFirst(res);
+			else
+				d.invariantData.order.insertAfter(parent, res);
+			if (DEBUG) {
+				System.out.println("Couldn't find; adding node " + res + " with hash value " + res.hash);
+				res.printArguments();
+			}
+		} else if (res.dirty) {
+			if (DEBUG)
+				System.out.println("Reusing dirty node " + res.ptrString());
+			res.removeUselocs(d.invariantData);
+			res.result = null;
+			res.computed = false;
+			res.dirty = false;
+			res.epoch = ++useEpoch;
+			work++;
+
+			for (int l = 0 ; l < res.children.length ; l++) {
+				ComputationNode child = res.children[l];
+				if (child == null) continue;
+				if (DEBUG)
+					System.out.println("Removing edge " + res.ptrString() + " to " + child.ptrString());
+				ComputationNode.removeEdge(res, child, l);
+				if (child.num_parents == 0)
+					remove_nodes.add(child);
+			}
+		} else {
+			if (DEBUG)
+				System.out.println("Found existing memoized version " + res.ptrString());
+			//res.arguments = args;
+			// leaf-node optimization: a finished run on null or sentinel 
+			// arguments that used nothing will always give the same result
+			if (res.maybeConstant && (d.kind == FunctionData.REF ? res.result != null : res.computed)) {
+				res.maybeConstant = false;
+				if (res.uselocs == EdgePool.NIL)
+					res.makeConstant();
+			}
+		}
+
+		if (parent == null) {
+			if (DEBUG)
+				System.out.println("Setting computation tree");
+			// explicitly remove parents, from a copy since removing 
+			// may move the others around
+			ComputationNode[] ps = res.parents.clone();
+			for (int i = 0 ; i < ps.length ; i++) {
+				ComputationNode n = ps[i];
+				if (n == null) continue;
+				if (DEBUG)
+					System.out.println("Explicitly removing edge " + n.ptrString() + " to " + res);
+				ComputationNode.removeEdge(n, res, -1);
+				//if (n.num_children == 0 && n.num_parents == 0)
+					//remove_nodes.add(n);
+			}
+			d.invariantData.graphRoot = res;
+		} else {
+			if (res.constant) {
+				if (parent != dummy)
+					parent.addChild(res, slot);
+			} else if (parent != dummy) {
+				if (DEBUG)
+					System.out.println("Adding edge from " + parent.ptrString() + " to " + res.ptrString()); 
+				ComputationNode.addEdge(parent, res, slot);
+				// an existing node may come before its new parent
+				if (! OrderList.before(parent, res))
+					d.invariantData.order.moveAfter(parent, res);
+			}
+		}
+		return res;
+	}
+	
+	static boolean constantArguments(Object[] args) {
+		for (int i = 0 ; i < args.length ; i++) {
+			Object a = args[i];
+			if (a != null && ! (a instanceof IncObject && ((IncObject) a).sentinel))
+				return false;
+		}
+		return true;
+	}
+	
+	public static String ptr(Object o) {
+		return Integer.toHexString(System.identityHashCode(o));		
+	}
+	
+	// every time a node is (re)run it gets a fresh epoch
+	static long useEpoch;
+	// nodes run, recomputed or pruned by passes so far; the cost model 
+	// takes the time of a pass per unit of this
+	static long work;
+	
+	public static void useMap(InvariantData d, Object o, ComputationNode cn) {
+		int id = d.id;
+		if (DEBUG)
+			System.out.println("At usemap with id " + id + " and object " + o + " at " + ptr(o) + " and " + cn);
+		IncObject op = (IncObject) o;
+		if (op.sentinel)
+			return;
+		// each (object, node) pair is recorded once per run of the node:
+		// the object remembers the epoch of the last run that recorded it.
+		// runs nest, and a run started inside cn's has a later epoch, so 
+		// a later stamp means a callee of cn recorded the object since;
+		// cn may have too, before the call, in which case its edge is 
+		// among those made since its run began
+		long stamp = op.useStamp;
+		if (stamp == cn.epoch)
+			return;
+		op.useStamp = cn.epoch;
+		if (stamp > cn.epoch && d.uses.recordedSince(op, id, cn))
+			return;
+
+		cn.addUseloc(op, d);
+		op.used = op.used | (1L << id);
+	}
+	
+	public static Object doIncremental(FunctionData fd, Object[] args) {
+		AsyncChecker c = checker;
+		if (c != null && Thread.currentThread() != c)
+			return c.submit(fd, args);
+		return incremental(fd, args).boxedResult();
+	}
+	
+	// entry points for invariants with a primitive result, 
+	// which need not box it on the synchronous path
+	public static boolean doIncrementalBoolean(FunctionData fd, Object[] args) {
+		AsyncChecker c = checker;
+		if (c != null && Thread.currentThread() != c)
+			return ((Boolean) c.submit(fd, args)).booleanValue();
+		return incremental(fd, args).value != 0;
+	}
+	
+	public static int doIncrementalInt(FunctionData fd, Object[] args) {
+		AsyncChecker c = checker;
+		if (c != null && Thread.currentThread() != c)
+			return ((Integer) c.submit(fd, args)).intValue();
+		return (int) incremental(fd, args).value;
+	}
+	
+	public static long doIncrementalLong(FunctionData fd, Object[] args) {
+		AsyncChecker c = checker;
+		if (c != null && Thread.currentThread() != c)
+			return ((Long) c.submit(fd, args)).longValue();
+		return incremental(fd, args).value;
+	}
+	
+	// entry points taking the arguments from fd.entry's probe, which 
+	// the caller has filled in; only used while probeEntries() holds.
+	// no argument array is made unless the invariant's root changes.
+	public static boolean probeEntries() {
+		return checker == null;
+	}
+	
+	public static Object doIncremental(FunctionData fd) {
+		return incremental(fd).boxedResult();
+	}
+	
+	public static boolean doIncrementalBoolean(FunctionData fd) {
+		return incremental(fd).value != 0;
+	}
+	
+	public static int doIncrementalInt(FunctionData fd) {
+		return (int) incremental(fd).value;
+	}
+	
+	public static long doIncrementalLong(FunctionData fd) {
+		return incremental(fd).value;
+	}
+	
+	static ComputationNode incremental(FunctionData fd) {
+		ComputationNode root = fd.invariantData.graphRoot;
+		if (root != null && root.data == fd && fd.entry.matches(root.arguments))
+			return incremental(fd, root.arguments);
+		return incremental(fd, fd.entry.materialize());
+	}
+	
+	// brings the invariant up to date for args and returns its root node
+	static ComputationNode incremental(FunctionData fd, Object[] args) {
+		if (MemoryPressure.raised)
+			MemoryPressure.relieve();
+		long pass = useEpoch;
+		ComputationNode root = update(fd, args);
+		InvariantData d = fd.invariantData;
+		if (root == d.graphRoot && d.budget > 0 && d.nodes > d.budget && d.nodes > d.evictAt)
+			Eviction.evict(d, pass);
+		return root;
+	}
+	
+	static ComputationNode update(FunctionData fd, Object[] args) {
+		if (DEBUG)
+			System.out.println("- DoIncremental invoked for funcid " + fd);
+		AsyncChecker c = checker;
+		if (c == null)
+			distribute();
+
+		InvariantData d = fd.invariantData;
+		if (c == null && batchDepth > 0 && (d.graphRoot != null || d.dropped)) {
+			deferCheck(fd, args);
+			return (d.stale ? d.scratch : d.graphRoot);
+		}
+		ArrayList waiting = d.waiting;
+		if (DEBUG) {
+			System.out.println("Number of elements waiting: " + waiting.size());
+			for (int q = 0 ; q < waiting.size() ; q++) {
+				System.out.println("Element " + q + ": " + waiting.get(q) + " at " + ptr(waiting.get(q)));
+			}
+		}
+		if (d.dropped) {
+			if (! MemoryPressure.mayRebuild())
+				return runScratch(fd, args, d);
+			if (DEBUG)
+				System.out.println("Rebuilding the dropped graph");
+			d.dropped = false;
+			d.stale = false;
+			d.scratchSpent = 0;
+		}
+		if (d.graphRoot == null) {
+			if (DEBUG)
+				System.out.println("Never been run; restarting");
+			fd.runFor(args, null);
+			if (DEBUG)
+				System.out.println("Restarted value is " + d.graphRoot.boxedResult());
+			return d.graphRoot;
+		} 
+		
+		ComputationNode first = d.graphRoot;
+		//System.out.println("First node " + first + " result is " + first.result + " and children is " + first.num_children);
+		boolean redo_first = ! ObjArrayStrategy.sEquals(first.arguments, args);
+		if (DEBUG && redo_first)
+			System.out.println("Initial arguments differ");
+		
+		// estimate what a pass would cost, and run the invariant from 
+		// scratch instead while that is clearly cheaper. the graph is 
+		// then left as it is, with the writes waiting, until the scratch
+		// runs made in the meantime have cost as much as the pass to 
+		// catch up would, or it no longer looks dear
+		boolean marked = false;
+		if (fallback && d.passes > 0) {
+			if (! d.stale) {
+				markDirty(d);
+				marked = true;
+				d.affected = dirty_nodes.size();
+			} else {
+				// the graph has not changed since: only the objects 
+				// written since the last check need counting, and 
+				// marking all of them each time would cost a pass
+				for (int i = d.counted ; i < waiting.size() ; i++)
+					d.affected += ((IncObject) waiting.get(i)).numUses(d.id);
+			}
+			d.counted = waiting.size();
+			// each dirty node is rerun at least once. what new root 
+			// arguments cost depends on how much of the structure is 
+			// new, which only past passes can tell
+			double pass = (Math.min(d.affected, d.nodes) + (redo_first ? d.redoWork : 0)) * d.passCost();
+			if (pass > FALLBACK_MARGIN * d.nodes * d.scratchCost() && d.scratchSpent < pass) {
+				if (marked)
+					dirty_nodes.clearDirty();
+				return runScratch(fd, args, d);
+			}
+		}
+		if (! marked)
+			markDirty(d);
+		// the dirty nodes keep their edges to the objects until they are
+		// rerun or pruned, which the pass does to all of them
+		waiting.clear();
+		
+		long start = System.nanoTime(), before = work;
+		ComputationNode root = pass(fd, args, d, first, redo_first);
+		if (work > before)
+			d.passTook(System.nanoTime() - start, work - before, redo_first);
+		d.stale = false;
+		d.scratchSpent = 0;
+		return root;
+	}
+	
+	static ComputationNode runScratch(FunctionData fd, Object[] args, InvariantData d) {
+		if (DEBUG)
+			System.out.println("Running from scratch");
+		ComputationNode res = d.scratch;
+		if (res == null || res.data != fd)
+			res = d.scratch = new ComputationNode(args, fd);
+		res.arguments = args;
+		long start = System.nanoTime();
+		fd.runScratchFor(res);
+		long time = System.nanoTime() - start;
+		d.scratchSpent += time;
+		d.scratchTook(time);
+		d.stale = true;
+		return res;
+	}
+	
+	// marks the nodes that used the objects written for d as dirty,
+	// queueing them for the next pass
+	static void markDirty(InvariantData d) {
+		ArrayList waiting = d.waiting;
+		for (int i = 0 ; i < waiting.size() ; i++) {
+			Object o = waiting.get(i);
+			if (DEBUG)  
+				System.out.println("Waiting object detected: " + o + 
+						" with hash value " + o.hashCode());
+			IncObject op = (IncObject) o;
+			if (DEBUG)
+				System.out.println("Number of nodes affected is " + op.numUses(d.id));
+			EdgePool pool = d.uses;
+			for (int e = op.uses(d.id) ; e != EdgePool.NIL ; e = pool.objectNext[e]) { 
+				ComputationNode cn = pool.node[e];
+				if (! cn.dirty) {
+					cn.dirty = true;
+					if (DEBUG)
+						System.out.println("Marking as dirty " + cn.ptrString());
+					dirty_nodes.add(cn);
+				} else {
+					if (DEBUG)
+						System.out.println("Already seen node!");
+				}
+			}
+		}
+	}
+	
+	// an incremental pass over the written objects waiting for d
+	static ComputationNode pass(FunctionData fd, Object[] args, 
+			InvariantData d, ComputationNode first, boolean redo_first) {
+		if (DEBUG)
+			System.out.println("Number of nodes is " + dirty_nodes.size());
+
+		// initial arguments match, no nodes changed: just return old result
+		if (dirty_nodes.size() == 0 && ! redo_first)
+			return d.graphRoot;
+		
+		// sort affected in graph order, parents first. the order is taken 
+		// up front because rerunning nodes can reorder the graph.
+		affected_nodes.clear();
+		while (dirty_nodes.size() > 0)
+			affected_nodes.add(dirty_nodes.remove());
+		int s = affected_nodes.size();
+		
+//		rerun_nodes.clear();
+		remove_nodes.clear();
+		differing_nodes.clear();
+
+		if (redo_first) {
+			if (DEBUG)
+				System.out.println("Explicitly rerunning first");
+			fd.runFor(args, null);
+			// if the first node has been replaced, prune it
+			if (first != d.graphRoot) {
+				if (first.num_parents == 0)
+					remove_nodes.add(first);
+					//first.prune(d);
+				first = d.graphRoot;
+			}
+		}
+
+		for (int i = 0 ; i < s ; i++) {
+			ComputationNode n = (ComputationNode) affected_nodes.get(i);
+			//remove_nodes.clear();
+			if (n.num_parents == 0 && n != d.graphRoot) {
+				//if (DEBUG)
+				//  System.out.println("Found one to prune " + n.ptrString());
+				//n.printArguments();
+				//n.prune(d);
+				remove_nodes.add(n);
+			} else if (n.dirty) {
+				// if we find a node with dirty parents, skip it;
+				// it will be rerun when the parents are rerun.
+				if (n != d.graphRoot) {
+					boolean bail = true;
+					for (int gz = 0 ; gz < n.parents_last ; gz++) {
+						ComputationNode p = n.parents[gz];
+						if (p != null && !p.dirty)
+							bail = false;
+					}
+					if (bail) continue;
+				}
+				for (int l = 0 ; l < n.children.length ; l++) {
+					ComputationNode child = n.children[l];
+					if (child == null) continue;
+					if (DEBUG)
+						System.out.println("Removing edge " + n.ptrString() + " to " + child.ptrString());
+					ComputationNode.removeEdge(n, child, l);
+					if (child.num_parents == 0) {
+						if (DEBUG)
+							System.out.println("Adding child to remove nodes ");
+						remove_nodes.add(child);
+					}
+				}
+				if (DEBUG)
+					System.out.println("Running on node " + n.ptrString());
+				if (n == first && redo_first)
+					continue;
+
+				if (! runNode(n)) {
+					if (DEBUG)
+						System.out.println("Found differing result for " + n.ptrString());
+					differing_nodes.add(n);
+				}
+				n.dirty = false;
+				//				for (int l = 0 ; l < remove_nodes.size() ; l++) {
+//					ComputationNode child = (ComputationNode) remove_nodes.get(l);
+//					if (DEBUG)
+//					System.out.println("Checking child " + child.ptrString() + " for pruning");
+//					if (child.num_parents == 0)
+//						child.prune(d);
+//				}
+			}
+		}
+	
+		// finally, recompute differing nodes
+		if (differing_nodes.size() > 0) {
+			if (parallelThreshold > 0 && differing_nodes.size() >= parallelThreshold) {
+				ParallelPropagation.propagate(differing_nodes);
+			}	else {
+				for (int w = 0 ; w < differing_nodes.size() ; w++) {
+					ComputationNode foo = (ComputationNode) differing_nodes.get(w);
+					for (int x = 0 ; x < foo.parents_last ; x++) {
+						ComputationNode bar = foo.parents[x];
+						if (bar != null)
+							propagate_nodes.add(bar);
+					}
+				}
+				recomputeDiffering(propagate_nodes);
+			}
+		}
+
+		if (DEBUG)
+			System.out.println("num to prune is " + remove_nodes.size());
+		int pruned = 0;
+		for (int l = 0 ; l < remove_nodes.size() ; l++) {
+			ComputationNode child = (ComputationNode) remove_nodes.get(l);
+			if (DEBUG)
+				System.out.println("Checking child " + child.ptrString() + " for pruning");
+
+			if (child.num_parents == 0 && child != d.graphRoot) {
+				pruned += child.prune();
+			}
+		}
+		if (DEBUG)
+			System.out.println("num pruned is " + pruned);
+		work += pruned;
+		// don't let the scratch lists keep nodes alive between checks
+		remove_nodes.clear();
+		affected_nodes.clear();
+		differing_nodes.clear();
+
+		//System.out.println("- Done with doIncremental");
+		return d.graphRoot;
+	}
+
+  // called by the runOnce copies; see MissingChild
+  public static void missingChild() {
+  	throw missingChild;
+  }
+  
+  // reruns a node whose runOnce copy could not be used. the node has to
+  // be dirty, so that getMemoized drops its uses and child edges first
+  static void rerun(ComputationNode c) {
+  	c.data.runFor(c.arguments, c == c.data.invariantData.graphRoot ? null : dummy);
+  }
+
+  private static boolean runNode(ComputationNode newcn) {
+	  Object oldres = newcn.result;
+	  long oldvalue = newcn.value;
+	  //System.out.println("* Running on new node");
+	  //newcn.printArguments();
+	  newcn.data.runFor(newcn.arguments, 
+	  		newcn == newcn.data.invariantData.graphRoot ? null : dummy);
+	  boolean same = newcn.sameResult(oldres, oldvalue);
+	  if (DEBUG && ! same)
+	  	System.out.println("Old result was " + oldres + "/" + oldvalue + " and new result is " + newcn.boxedResult());
+	  return (same);
+  }
+	
+	// nodes come off the worklist deepest first, so by the time a node
+	// is recomputed all of its changed descendants have been recomputed
+	static void recomputeDiffering(NodeScheduler worklist) {
+		if (DEBUG)
+			System.out.println("Processing differing nodes " + worklist.size());
+		while (worklist.size() > 0) {
+			ComputationNode c = worklist.remove();
+			if (DEBUG)
+				System.out.println("Recomputing difference for " + c.ptrString());
+			// if result differs, parents need to be recomputed too
+			c.dirty = true;
+			Object oldres = c.result;
+			long oldvalue = c.value;
+			if (DEBUG) {
+				for (int i = 0 ; i < c.children.length ; i++) {
+					ComputationNode child = c.children[i];
+					if (child != null)
+						System.out.println("Child (" + i + ") " + child.ptrString());
+				}
+			}
+			try {
+				c.data.recompute(c);
+			} catch (MissingChild e) {
+				if (DEBUG)
+					System.out.println("Missing a child; rerunning " + c.ptrString());
+				rerun(c);
+			}
+			work++;
+			//System.out.println("Old was " + oldres + " and new is "  + c.result);
+			if (! c.sameResult(oldres, oldvalue)) {
+				if (DEBUG)
+					System.out.println("Different result: " + c.boxedResult() + "; adding parents again");
+
+				for (int i = 0 ; i < c.parents_last ; i++) { 
+					if (c.parents[i] != null) {
+						if (DEBUG)
+							System.out.println("Added parent " + c.parents[i].ptrString());
+						worklist.add(c.parents[i]);
+					}
+				}
+			}	else {
+				if (DEBUG)
+					System.out.println("Found same result; stopping upchain");
+			}
+			//System.out.println("Done recomputing difference");
+			c.dirty = false;
+		}
+		//System.out.println("Done with all differing");
+	}
+}
@@ -0,0 +1,146 @@
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/*
+ * Pooled storage for the dependencies of an invariant's computation 
+ * graph. An edge records that a node used an object, and is threaded 
+ * on both of them: on the list of the objects the node has used, and 
+ * on the list of the nodes of this invariant that have used the object,
+ * whose head the object keeps (see IncObject). Neither side allocates
+ * collections of its own.
+ *
+ * An edge is an index into parallel arrays; a list is represented by 
+ * the index of its first edge, or NIL if empty. A node's edges are only
+ * ever released all at once, when it is rerun or pruned, so its list 
+ * is singly linked; an object's list is doubly linked, so that each 
+ * edge comes off it in constant time however many nodes share the 
+ * object. Released edges are kept on a free list and reused, and the 
+ * arrays only ever grow.
+ */
+
+package runtime;
+
+final class EdgePool {
+	static final int NIL = -1;
+	static final int INITIAL_SIZE = 64;
+	
+	IncObject[] object = new IncObject[INITIAL_SIZE];
+	ComputationNode[] node = new ComputationNode[INITIAL_SIZE];
+	// next edge of the same node, or of the free list
+	int[] next = new int[INITIAL_SIZE];
+	// neighbouring edges of the same object
+	int[] objectNext = new int[INITIAL_SIZE];
+	int[] objectPrev = new int[INITIAL_SIZE];
+	// edges below top have been handed out at least once
+	int top;
+	int free = NIL;
+	int live;
+	
+	// records that n, whose list starts at head, used o on behalf of 
+	// invariant id; the edge goes in front of both lists, and the new 
+	// head of n's is returned
+	int add(int head, ComputationNode n, IncObject o, int id) {
+		int e = free;
+		if (e != NIL) {
+			free = next[e];
+		} else {
+			if (top == object.length)
+				grow();
+			e = top++;
+		}
+		object[e] = o;
+		node[e] = n;
+		next[e] = head;
+		int s = o.makeSlot(id);
+		int first = o.heads[s];
+		objectPrev[e] = NIL;
+		objectNext[e] = first;
+		if (first != NIL)
+			objectPrev[first] = e;
+		o.heads[s] = e;
+		o.counts[s]++;
+		live++;
+		return e;
+	}
+	
+	// whether n has used o since its current run began. the edges made 
+	// since then are at the front of o's list, and belong to n or to 
+	// nodes run inside it, whose epochs are later than n's
+	boolean recordedSince(IncObject o, int id, ComputationNode n) {
+		int s = o.slot(id);
+		if (s < 0)
+			return false;
+		for (int e = o.heads[s] ; e != NIL && node[e].epoch >= n.epoch ; e = objectNext[e])
+			if (node[e] == n)
+				return true;
+		return false;
+	}
+	
+	// takes all edges of the node list starting at head off their 
+	// objects' lists, and puts them on the free list
+	void release(int head, int id) {
+		while (head != NIL) {
+			int e = head;
+			head = next[e];
+			IncObject o = object[e];
+			int s = o.slot(id);
+			int p = objectPrev[e], q = objectNext[e];
+			if (q != NIL)
+				objectPrev[q] = p;
+			if (p != NIL)
+				objectNext[p] = q;
+			else
+				o.heads[s] = q;
+			o.counts[s]--;
+			object[e] = null;
+			node[e] = null;
+			next[e] = free;
+			free = e;
+			live--;
+		}
+	}
+	
+	void grow() {
+		int size = object.length * 2;
+		IncObject[] no = new IncObject[size];
+		ComputationNode[] nn = new ComputationNode[size];
+		System.arraycopy(object, 0, no, 0, top);
+		System.arraycopy(node, 0, nn, 0, top);
+		object = no;
+		node = nn;
+		next = grow(next, size);
+		objectNext = grow(objectNext, size);
+		objectPrev = grow(objectPrev, size);
+	}
+	
+	int[] grow(int[] a, int size) {
+		int[] na = new int[size];
+		System.arraycopy(a, 0, na, 0, top);
+		return na;
+	}
+	
+	public String toString() {
+		return live + " edges in use of " + object.length;
+	}
+}
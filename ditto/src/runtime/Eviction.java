@@ -0,0 +1,220 @@
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/*
+ * Keeps the graph of an invariant within its node budget 
+ * (InvariantData.budget). When a check leaves more nodes than that, 
+ * the coldest subgraphs are collapsed into their top node: the nodes
+ * below it are dropped from the memo tables and the graph, and the 
+ * top node takes over the objects they used. Its result is still that 
+ * of the whole subgraph, and a write to any object in it dirties the 
+ * top node, whose rerun then builds the subgraph again from scratch.
+ *
+ * Only nodes with a single parent are dropped. A shared node reached 
+ * from a collapsed subgraph stays in the graph for its other parents,
+ * and the top node also takes over the objects used below it, since 
+ * it no longer hears of its result changing.
+ *
+ * Coldness is the newest epoch in a subgraph, i.e. when any of its 
+ * nodes was last run. Subgraphs are collapsed whole, up to a size that
+ * bounds how much a single write into them can cost to recompute.
+ *
+ * Subgraphs run by the pass that triggered the eviction are kept, since
+ * they were just rebuilt for writes that are likely to come again. And
+ * when eviction cannot get the graph down to its target (what is left 
+ * is shared, or has subgraphs too big to collapse), the graph has to 
+ * grow by half again before it is walked again. Both let the graph 
+ * stay over its budget for longer, in exchange for not dropping and
+ * rebuilding the same nodes check after check.
+ */
+
+package runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+
+class Eviction {
+	// after evicting, the graph is left at this fraction of the budget
+	static final double TARGET = .75;
+	// largest subgraph collapsed, as a fraction of the budget and 
+	// in nodes; a write into it reruns this many nodes at most
+	static final double REGION = 1 / 16.0;
+	static final int MAX_REGION = 16;
+	// after evicting, the graph may grow by this fraction of its 
+	// size (or down to the target, whichever is more) before the next
+	static final double REGROW = .5;
+	
+	static final Object SHARED = new Object(), DROPPED = new Object();
+	static ArrayList order = new ArrayList();
+	static ArrayList stack = new ArrayList();
+	
+	// pass is the last epoch before the check that grew the graph
+	static void evict(InvariantData d, long pass) {
+		ComputationNode root = d.graphRoot;
+		if (root == null)
+			return;
+		int target = (int) (d.budget * TARGET);
+		int max_region = Math.max(2, Math.min(MAX_REGION, (int) (d.budget * REGION)));
+		
+		// walk the nodes that only have one parent from the root, parents
+		// first, and total up subgraph sizes and newest epochs children first
+		ArrayList order = Eviction.order;
+		order.clear();
+		order.add(root);
+		int[] up = new int[16];
+		up[0] = -1;
+		for (int i = 0 ; i < order.size() ; i++) {
+			ComputationNode n = (ComputationNode) order.get(i);
+			for (int j = 0 ; j < n.children.length ; j++) {
+				ComputationNode c = n.children[j];
+				if (c == null || c.num_parents != 1)
+					continue;
+				if (order.size() == up.length) {
+					int[] nu = new int[up.length * 2];
+					System.arraycopy(up, 0, nu, 0, up.length);
+					up = nu;
+				}
+				up[order.size()] = i;
+				order.add(c);
+			}
+		}
+		int num = order.size();
+		int[] size = new int[num];
+		long[] newest = new long[num];
+		for (int i = num ; i-- > 0 ; ) {
+			ComputationNode n = (ComputationNode) order.get(i);
+			size[i]++;
+			if (n.epoch > newest[i])
+				newest[i] = n.epoch;
+			if (i > 0) {
+				size[up[i]] += size[i];
+				if (newest[i] > newest[up[i]])
+					newest[up[i]] = newest[i];
+			}
+		}
+		
+		// candidates are the largest subgraphs within max_region 
+		// that this pass did not run
+		ArrayList candidates = new ArrayList();
+		for (int i = 1 ; i < num ; i++) {
+			if (size[i] > 1 && size[i] <= max_region && size[up[i]] > max_region && newest[i] <= pass)
+				candidates.add(Integer.valueOf(i));
+		}
+		final long[] age = newest;
+		Object[] sorted = candidates.toArray();
+		Arrays.sort(sorted, new Comparator() {
+			public int compare(Object a, Object b) {
+				long x = age[((Integer) a).intValue()], y = age[((Integer) b).intValue()];
+				return x < y ? -1 : (x == y ? 0 : 1);
+			}
+		});
+		for (int k = 0 ; k < sorted.length && d.nodes > target ; k++) {
+			ComputationNode n = (ComputationNode) order.get(((Integer) sorted[k]).intValue());
+			d.evicted += collapse(n, d);
+		}
+		if (Dispatch.DEBUG)
+			System.out.println("Evicted down to " + d.nodes + " nodes of budget " + d.budget);
+		order.clear();
+		ArrayList live = Dispatch.liveFunctions();
+		for (int i = 0 ; i < live.size() ; i++) {
+			FunctionData fd = (FunctionData) live.get(i);
+			if (fd.invariantData == d)
+				fd.memo.trim();
+		}
+		// nodes that cannot be collapsed (shared ones, or ones no longer 
+		// reachable from the root but not yet pruned) could keep the graph 
+		// over budget; don't walk it again until it has grown some more
+		d.evictAt = d.nodes + Math.max(d.budget - target, (int) (d.nodes * REGROW));
+	}
+	
+	// drops the subgraph below top, whose objects top takes over;
+	// returns the number of nodes dropped
+	static int collapse(ComputationNode top, InvariantData d) {
+		// a fresh epoch for top lets the useStamp of an object tell 
+		// whether top already uses it
+		long stamp = top.epoch = ++Dispatch.useEpoch;
+		EdgePool pool = d.uses;
+		for (int e = top.uselocs ; e != EdgePool.NIL ; e = pool.next[e])
+			pool.object[e].useStamp = stamp;
+		
+		ArrayList stack = Eviction.stack;
+		// the shared nodes walked so far, and the nodes dropped once there 
+		// are any, since walking a shared node can push a node again that 
+		// is dropped before it comes off the stack
+		IdentityHashMap seen = null;
+		int dropped = 0;
+		pushChildren(top, stack);
+		while (stack.size() > 0) {
+			ComputationNode n = (ComputationNode) stack.remove(stack.size() - 1);
+			if (n.constant)
+				continue;
+			boolean drop = n.num_parents == 0;
+			if (seen != null) {
+				Object state = seen.get(n);
+				if (state == DROPPED || (state == SHARED && ! drop))
+					continue;
+				seen.put(n, drop ? DROPPED : SHARED);
+			} else if (! drop) {
+				seen = new IdentityHashMap();
+				seen.put(n, SHARED);
+			}
+			for (int e = n.uselocs ; e != EdgePool.NIL ; e = pool.next[e]) {
+				IncObject o = pool.object[e];
+				if (o.useStamp != stamp) {
+					o.useStamp = stamp;
+					top.addUseloc(o, d);
+					o.used = o.used | (1L << d.id);
+				}
+			}
+			if (drop) {
+				pool.release(n.uselocs, d.id);
+				n.uselocs = EdgePool.NIL;
+				n.data.memo.remove(n);
+				d.order.remove(n);
+				d.nodes--;
+				dropped++;
+				pushChildren(n, stack);
+			} else {
+				for (int j = 0 ; j < n.children.length ; j++) {
+					if (n.children[j] != null)
+						stack.add(n.children[j]);
+				}
+			}
+		}
+		return dropped;
+	}
+	
+	// detaches the children of n and pushes them for collapse()
+	static void pushChildren(ComputationNode n, ArrayList stack) {
+		for (int j = 0 ; j < n.children.length ; j++) {
+			ComputationNode c = n.children[j];
+			if (c == null)
+				continue;
+			ComputationNode.removeEdge(n, c, j);
+			stack.add(c);
+		}
+	}
+}
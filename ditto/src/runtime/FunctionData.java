@@ -1,47 +1,123 @@
-/* 
-Copyright (c) 2007, AJ Shankar
-
-All rights reserved.
-
-Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
-
-    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
-    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
-    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
-
-THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
-"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
-LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
-A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
-CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
-EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
-PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
-PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
-LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
-NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
-SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
-*/
-
-/*
- * One of these classes is created for each invariant function.
- * Note that each function can only belong to one invariant.
- */
-
-package runtime;
-
-import gnu.trove.THashMap;
-
-public abstract class FunctionData {
-	public THashMap memo;
-	public InvariantData invariantData;
-	public Object dataStructure;
-	public abstract Object run(Object[] args, ComputationNode parent);
-	public abstract Object runOnce(Object[] args, Object[] children);
-	public abstract int numCalls();
-	int id;
-	public FunctionData(Object ds, InvariantData invd) {
-		dataStructure = ds;
-		memo = new THashMap(new ObjArrayStrategy());
-		invariantData = invd;
-	}
-}
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/*
+ * One of these classes is created for each invariant function.
+ * Note that each function can only belong to one invariant.
+ */
+
+package runtime;
+
+public abstract class FunctionData {
+	// kinds of results: REF functions keep theirs in ComputationNode.result,
+	// the primitive ones in ComputationNode.value (booleans as 0 or 1)
+	public static final int REF = 0;
+	public static final int BOOLEAN = 1;
+	public static final int INT = 2;
+	public static final int LONG = 3;
+	
+	// nodes of this function by arguments; created by the generated 
+	// subclass, which knows the parameter types
+	public Memo memo;
+	// probe for the arguments of calls from outside the invariant, kept
+	// apart from memo's probe, which the invariant itself overwrites
+	public Memo entry;
+	public InvariantData invariantData;
+	public Object dataStructure;
+	// the fields the function records uses of, as "class.field" names 
+	// separated by spaces; set by the generated subclass
+	public String reads;
+	public abstract Object run(Object[] args, ComputationNode parent);
+	public abstract Object runOnce(Object[] args, Object[] children);
+	public abstract int numCalls();
+	// the function as written, without the graph: calls among 
+	// invariant functions go straight to each other
+	public abstract Object runScratch(Object[] args);
+	public int kind = REF;
+	int id;
+	public FunctionData(Object ds, InvariantData invd) {
+		dataStructure = ds;
+		invariantData = invd;
+	}
+	
+	// pruned nodes kept for reuse, at most Dispatch.recycleNodes of them
+	ComputationNode[] free;
+	int numFree;
+	public long reused;
+	
+	// a node for the arguments in memo's probe, off the free list if 
+	// there is one there. a reused node gets a new argument array, as 
+	// the old one may still be shared, e.g. by the invariant's scratch 
+	// node or a deferred check
+	final ComputationNode newNode() {
+		if (numFree == 0)
+			return new ComputationNode(memo.materialize(), this);
+		ComputationNode n = free[--numFree];
+		free[numFree] = null;
+		n.reset(memo.materialize());
+		reused++;
+		return n;
+	}
+	
+	// keeps a node that prune has just taken out of the graph for 
+	// newNode. pruning comes at the end of a pass, once the schedulers
+	// are empty, and no node is made until the next pass, so by then 
+	// nothing refers to it any more
+	final void recycle(ComputationNode n) {
+		// still in a scheduler, after a pass that threw
+		if (n.queued)
+			return;
+		if (free == null) {
+			if (Dispatch.recycleNodes == 0)
+				return;
+			free = new ComputationNode[Dispatch.recycleNodes];
+		} else if (numFree == free.length)
+			return;
+		// let go of what it was computed for until it is reused
+		n.arguments = null;
+		n.result = null;
+		free[numFree++] = n;
+	}
+	
+	final void releaseFree() {
+		free = null;
+		numFree = 0;
+	}
+	
+	// runs the function, leaving the result in the node for args
+	void runFor(Object[] args, ComputationNode parent) {
+		run(args, parent);
+	}
+	
+	// runs the function from scratch on c's arguments, leaving the 
+	// result in c, which need not be in the graph
+	void runScratchFor(ComputationNode c) {
+		c.result = runScratch(c.arguments);
+	}
+	
+	// recomputes c from the results of its children
+	void recompute(ComputationNode c) {
+		c.result = runOnce(c.arguments, c.children);
+	}
+}
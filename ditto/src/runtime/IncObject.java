@@ -1,41 +1,108 @@
-/* 
-Copyright (c) 2007, AJ Shankar
-
-All rights reserved.
-
-Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
-
-    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
-    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
-    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
-
-THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
-"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
-LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
-A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
-CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
-EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
-PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
-PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
-LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
-NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
-SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
-*/
-
-/**
- * Heap objects used in data structure checks optimized by Ditto
- * are subclassed from this class, which provides a "header"-like
- * area to store metadata for each used object.
- */
-package runtime;
-
-import java.util.ArrayList;
-
-/**
- * @author aj
- *
- */
-public class IncObject {
-	public int used;
-	ArrayList[] lists = new ArrayList[4];
-}
\ No newline at end of file
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/**
+ * Heap objects used in data structure checks optimized by Ditto
+ * are subclassed from this class, which provides a "header"-like
+ * area to store metadata for each used object.
+ */
+package runtime;
+
+/**
+ * @author aj
+ *
+ */
+public class IncObject {
+	// summary of the invariants that have used this object since it 
+	// was last written: invariant id sets bit (id & 63). barriers only
+	// test it against zero; distribute() resolves set bits to slots.
+	public long used;
+	// epoch of the node run that last recorded a use of this object
+	long useStamp;
+	// set for sentinels; see Dispatch.sentinel
+	boolean sentinel;
+	// per invariant, the computation nodes that used this object: the 
+	// first edge of its list in the invariant's EdgePool, and the length
+	// of the list. kept sparse, since an object is normally used by a 
+	// handful of invariants no matter how many are registered.
+	int[] slotIds;
+	int[] heads;
+	int[] counts;
+	int numSlots;
+	
+	// the slot of invariant id, or -1 if it has none
+	int slot(int id) {
+		for (int i = 0 ; i < numSlots ; i++)
+			if (slotIds[i] == id)
+				return i;
+		return -1;
+	}
+	
+	int makeSlot(int id) {
+		int s = slot(id);
+		if (s >= 0)
+			return s;
+		if (slotIds == null) {
+			slotIds = new int[2];
+			heads = new int[2];
+			counts = new int[2];
+		} else if (numSlots == slotIds.length) {
+			slotIds = grow(slotIds);
+			heads = grow(heads);
+			counts = grow(counts);
+		}
+		slotIds[numSlots] = id;
+		heads[numSlots] = EdgePool.NIL;
+		counts[numSlots] = 0;
+		return numSlots++;
+	}
+	
+	int[] grow(int[] a) {
+		int[] na = new int[numSlots * 2];
+		System.arraycopy(a, 0, na, 0, numSlots);
+		return na;
+	}
+	
+	// first edge of the nodes of invariant id that used this object
+	int uses(int id) {
+		int s = slot(id);
+		return (s < 0 ? EdgePool.NIL : heads[s]);
+	}
+	
+	int numUses(int id) {
+		int s = slot(id);
+		return (s < 0 ? 0 : counts[s]);
+	}
+	
+	// forgets the nodes of invariant id that used this object
+	void dropList(int id) {
+		int s = slot(id);
+		if (s < 0)
+			return;
+		numSlots--;
+		slotIds[s] = slotIds[numSlots];
+		heads[s] = heads[numSlots];
+		counts[s] = counts[numSlots];
+	}
+}
@@ -1,42 +1,123 @@
-/* 
-Copyright (c) 2007, AJ Shankar
-
-All rights reserved.
-
-Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
-
-    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
-    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
-    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
-
-THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
-"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
-LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
-A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
-CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
-EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
-PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
-PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
-LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
-NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
-SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
-*/
-
-/*
- * One of these classes is created for each invariant (which contains
- * one or more invariant functions).
- */
-
-package runtime;
-
-import java.util.*;
-
-public class InvariantData {
-	public ArrayList waiting;
-	public ComputationNode graphRoot;
-	public int id;
-	
-	public InvariantData() {
-		waiting = new ArrayList();
-	}
-}
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/*
+ * One of these classes is created for each invariant (which contains
+ * one or more invariant functions).
+ */
+
+package runtime;
+
+import java.util.*;
+
+public class InvariantData {
+	public ArrayList waiting;
+	public ComputationNode graphRoot;
+	// topological order of the graph's nodes
+	OrderList order = new OrderList();
+	// storage for the objects each node of the graph has used; kept per 
+	// invariant so that it goes away with the invariant's data structure
+	EdgePool uses = new EdgePool();
+	public int id;
+	// the latest check the asynchronous checker has finished without 
+	// throwing, with its result; guarded by the checker
+	AsyncChecker.Request lastDone;
+	// most nodes the graph keeps after a check, or 0 for no limit; 
+	// beyond it, cold subgraphs are collapsed (see Eviction)
+	public int budget = Dispatch.nodeBudget;
+	// nodes in the graph, and nodes dropped by collapsing so far
+	public int nodes;
+	public long evicted;
+	// graph size at which to evict next, once over budget
+	int evictAt;
+	// invariants of the lowest priority lose their graphs first when
+	// memory runs short (see MemoryPressure); dropped is set while the
+	// graph is gone, and drops counts how often that has happened
+	public int priority;
+	boolean dropped;
+	public long drops;
+	// cost model for choosing between an incremental pass and running
+	// the invariant from scratch (see Dispatch.update): decayed sums of 
+	// the time taken by passes, in nanoseconds, and the work they did 
+	// (see Dispatch.work), and of the time taken by scratch runs and 
+	// the graph's size at the time
+	double passTime, passWork, scratchTime, scratchNodes;
+	// average work of the passes that started from new root arguments
+	double redoWork;
+	public long passes, scratchRuns;
+	// set while the graph lags behind the structure because scratch 
+	// runs were cheaper; scratchSpent is what they have cost since
+	boolean stale;
+	double scratchSpent;
+	// while stale, the nodes the writes so far reach, counted once per
+	// object written, and how many of the waiting objects that covers
+	double affected;
+	int counted;
+	// holds the result of the latest scratch run
+	ComputationNode scratch;
+	
+	// weight left to the past with each new timing
+	static final double DECAY = .9375;
+	// timings are capped at this multiple of the estimate, so that a 
+	// collection or a compilation during one run does not skew it
+	static final double OUTLIER = 4;
+	// share of a pass's cost per node guessed for a scratch run until 
+	// one has been timed; it skips the lookups and recording of a pass
+	static final double SCRATCH_SHARE = .25;
+	
+	public InvariantData() {
+		waiting = new ArrayList();
+	}
+	
+	void passTook(long time, long work, boolean redo) {
+		if (redo)
+			redoWork = redoWork * DECAY + work * (1 - DECAY);
+		if (passWork > 0)
+			time = (long) Math.min(time, OUTLIER * work * passCost());
+		passTime = passTime * DECAY + time;
+		passWork = passWork * DECAY + work;
+		passes++;
+	}
+	
+	void scratchTook(long time) {
+		scratchRuns++;
+		// there is no graph to compare with while it is dropped
+		if (nodes == 0)
+			return;
+		if (scratchNodes > 0)
+			time = (long) Math.min(time, OUTLIER * nodes * scratchCost());
+		scratchTime = scratchTime * DECAY + time;
+		scratchNodes = scratchNodes * DECAY + nodes;
+	}
+	
+	// average nanoseconds per node a pass runs, recomputes or prunes
+	public double passCost() {
+		return (passWork == 0 ? 0 : passTime / passWork);
+	}
+	
+	// average nanoseconds per graph node of a scratch run
+	public double scratchCost() {
+		return (scratchNodes == 0 ? passCost() * SCRATCH_SHARE : scratchTime / scratchNodes);
+	}
+}
@@ -0,0 +1,273 @@
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/*
+ * Memo table of a function's computation nodes, keyed by their arguments.
+ * Transform generates a subclass per parameter signature, with a typed
+ * public probe field per parameter (k0, k1, ...) and a typed key column 
+ * per parameter. Lookups do not take an argument array: the caller stores
+ * the raw arguments into the probe and calls find(), and only if that 
+ * misses is the probe turned into an array, which becomes the new node's
+ * arguments. The table is open-addressed with linear probing.
+ *
+ * For functions whose only parameter is an IncObject, Transform also adds
+ * a node field for the function to the parameter's class and generates a
+ * subclass of the signature's memo that keeps each node in the field of 
+ * its key object, so that a lookup is a field load. The table then only 
+ * holds nodes for null keys and for keys whose field was already taken
+ * by a node of another instance of the function.
+ */
+
+package runtime;
+
+public abstract class Memo {
+	static final int INITIAL_SIZE = 16;
+	
+	ComputationNode[] nodes;
+	int[] hashes;
+	int size;
+	// hash of the probe as of the last find()
+	int probeHash;
+	// statistics: lookups done, slots examined by them, slots whose 
+	// hash matched but key did not, and the longest run examined
+	public long lookups, probes, collisions;
+	public int longestProbe;
+	// nodes kept in fields of their key objects, and lookups answered 
+	// without going to the table because of such a field
+	int slotted;
+	public long slotLookups;
+	
+	// hash of the arguments in the probe
+	protected abstract int hashProbe();
+	// whether the probe holds the key stored at slot i
+	protected abstract boolean matchesAt(int i);
+	// whether the probe holds the given arguments
+	public abstract boolean matches(Object[] args);
+	// copies the probe out into an argument array, with the slots 
+	// the runtime ignores (Dispatch.ignoreArgs) left empty
+	public abstract Object[] materialize();
+	// fills the probe from an argument array
+	protected abstract void load(Object[] args);
+	// key column maintenance
+	protected abstract void allocKeys(int capacity);
+	protected abstract void storeProbe(int i);
+	protected abstract void moveKey(int from, int to);
+	protected abstract void clearKey(int i);
+	
+	public ComputationNode find() {
+		return lookup();
+	}
+	
+	// adds a node created for the probe the last find() missed
+	public void insert(ComputationNode n) {
+		add(n);
+	}
+	
+	// removes n itself, not another node with equal arguments
+	public boolean remove(ComputationNode n) {
+		return delete(n);
+	}
+	
+	protected final ComputationNode lookup() {
+		int h = probeHash = hashProbe();
+		lookups++;
+		if (nodes == null)
+			return null;
+		int mask = nodes.length - 1;
+		int len = 0;
+		ComputationNode found = null;
+		for (int i = h & mask ; nodes[i] != null ; i = (i + 1) & mask) {
+			len++;
+			if (hashes[i] == h) {
+				if (matchesAt(i)) {
+					found = nodes[i];
+					break;
+				}
+				collisions++;
+			}
+		}
+		probes += len;
+		if (len > longestProbe)
+			longestProbe = len;
+		return found;
+	}
+	
+	protected final void add(ComputationNode n) {
+		n.hash = probeHash;
+		if (nodes == null) {
+			nodes = new ComputationNode[INITIAL_SIZE];
+			hashes = new int[INITIAL_SIZE];
+			allocKeys(INITIAL_SIZE);
+		}
+		int i = emptySlot(probeHash);
+		nodes[i] = n;
+		hashes[i] = probeHash;
+		storeProbe(i);
+		size++;
+		// the probe is reused for rehashing, so grow only after storing it
+		if (size * 4 > nodes.length * 3)
+			resize(nodes.length * 2);
+	}
+	
+	protected final boolean delete(ComputationNode n) {
+		if (nodes == null)
+			return false;
+		int mask = nodes.length - 1;
+		int i = n.hash & mask;
+		while (nodes[i] != n) {
+			if (nodes[i] == null)
+				return false;
+			i = (i + 1) & mask;
+		}
+		// close the gap: move back later entries of the run 
+		// whose home slot is not between the gap and them
+		for (int j = (i + 1) & mask ; nodes[j] != null ; j = (j + 1) & mask) {
+			int home = hashes[j] & mask;
+			if (j > i ? (home <= i || home > j) : (home <= i && home > j)) {
+				nodes[i] = nodes[j];
+				hashes[i] = hashes[j];
+				moveKey(j, i);
+				i = j;
+			}
+		}
+		nodes[i] = null;
+		clearKey(i);
+		size--;
+		return true;
+	}
+	
+	// helpers for the subclasses that keep nodes in their key objects
+	
+	// the node in a key object's field, if it belongs to this memo; 
+	// otherwise the table has to be searched, unless it is empty and
+	// the field is free for insert() to use
+	protected final ComputationNode findSlotted(ComputationNode n) {
+		if (n != null && n.data.memo == this) {
+			slotLookups++;
+			return n;
+		}
+		if (n == null && size == 0) {
+			slotLookups++;
+			return null;
+		}
+		return lookup();
+	}
+	
+	// whether a new node can go into the field n was read from, which 
+	// it can unless another instance of the function already uses it.
+	// a sentinel's nodes go to the table: the sentinel outlives every 
+	// structure, and its field would keep the first one's graph alive
+	protected final boolean takeSlot(IncObject key, ComputationNode n) {
+		if (n != null || key.sentinel)
+			return false;
+		slotted++;
+		return true;
+	}
+	
+	protected final void releaseSlot() {
+		slotted--;
+	}
+	
+	public int size() {
+		return size + slotted;
+	}
+	
+	public String stats() {
+		return slotted + " nodes in objects, " + slotLookups + " lookups on them; " + 
+			size + " nodes in " + (nodes == null ? 0 : nodes.length) + " slots, " + lookups + 
+			" lookups, " + (lookups == 0 ? 0 : (double) probes / lookups) + " slots per lookup, longest " + 
+			longestProbe + ", " + collisions + " hash collisions";
+	}
+	
+	// shrinks the table once most of it is empty, down to half full.
+	// clobbers the probe, so only call it between lookups.
+	void trim() {
+		if (nodes == null || nodes.length == INITIAL_SIZE || size * 4 >= nodes.length)
+			return;
+		int capacity = INITIAL_SIZE;
+		while (capacity < size * 2)
+			capacity *= 2;
+		resize(capacity);
+	}
+	
+	int emptySlot(int h) {
+		int mask = nodes.length - 1;
+		int i = h & mask;
+		while (nodes[i] != null)
+			i = (i + 1) & mask;
+		return i;
+	}
+	
+	void resize(int capacity) {
+		ComputationNode[] old = nodes;
+		int[] old_hashes = hashes;
+		nodes = new ComputationNode[capacity];
+		hashes = new int[capacity];
+		allocKeys(capacity);
+		for (int k = 0 ; k < old.length ; k++) {
+			ComputationNode n = old[k];
+			if (n == null)
+				continue;
+			int i = emptySlot(old_hashes[k]);
+			nodes[i] = n;
+			hashes[i] = old_hashes[k];
+			load(n.arguments);
+			storeProbe(i);
+		}
+	}
+	
+	// helpers for the generated subclasses
+	
+	// folds the hash of the next key into h, so argument order matters
+	public static int combine(int h, int k) {
+		return (Integer.rotateLeft(h, 5) ^ k) * 0x9e3779b9;
+	}
+	
+	// spreads the bits of a combined hash over the low bits the table uses
+	public static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		return h ^ (h >>> 16);
+	}
+	
+	// scalars compare by value, everything else by identity,
+	// as in ObjArrayStrategy
+	public static boolean sameRef(Object a, Object b) {
+		if (a == b)
+			return true;
+		if (ObjArrayStrategy.isScalar(a))
+			return a.equals(b);
+		return false;
+	}
+	
+	public static int refHash(Object a) {
+		if (a == null)
+			return 0;
+		if (ObjArrayStrategy.isScalar(a))
+			return a.hashCode();
+		return System.identityHashCode(a);
+	}
+}
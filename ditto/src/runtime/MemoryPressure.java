@@ -0,0 +1,195 @@
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/*
+ * Gives up the graphs of invariants while the heap is short, when 
+ * Dispatch.pressureLevel is set. The collection usage threshold of each
+ * heap pool that has one is put at that fraction of the pool's maximum, 
+ * and the JVM sends a notification when a collection leaves a pool 
+ * above it. The next check then drops the graph of every invariant of 
+ * the lowest priority that still has one (InvariantData.priority): its 
+ * nodes leave the memo tables, and the objects it used forget them. 
+ * Pressure that outlasts the next collection takes the next priority.
+ *
+ * An invariant without a graph is checked by running it from scratch
+ * (see Dispatch.runScratch). Once a collection has left every watched 
+ * pool under RECOVERED of its threshold, the next check of a dropped 
+ * invariant builds its graph again. Only one graph is rebuilt per 
+ * collection, so that they come back one at a time while there is room.
+ */
+
+package runtime;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+class MemoryPressure {
+	// fraction of its threshold a pool has to be back under
+	// after a collection before graphs are rebuilt
+	static final double RECOVERED = .75;
+	
+	// the pools watched, and the collectors that collect them
+	static ArrayList pools, collectors;
+	// set on the notification thread, cleared by the next check
+	static volatile boolean raised;
+	// collections so far when a graph was last dropped or rebuilt
+	static long lastCollections;
+	
+	// starts watching the heap, once
+	static synchronized void watch() {
+		if (pools != null)
+			return;
+		pools = new ArrayList();
+		collectors = new ArrayList();
+		List all = ManagementFactory.getMemoryPoolMXBeans();
+		for (int i = 0 ; i < all.size() ; i++) {
+			MemoryPoolMXBean p = (MemoryPoolMXBean) all.get(i);
+			// only the tenured pools support a usage threshold 
+			// as well; what a young pool keeps after a collection 
+			// says little about how full the heap is
+			if (p.getType() != MemoryType.HEAP || ! p.isUsageThresholdSupported() || 
+					! p.isCollectionUsageThresholdSupported())
+				continue;
+			long max = p.getUsage().getMax();
+			if (max <= 0)
+				continue;
+			p.setCollectionUsageThreshold((long) (max * Dispatch.pressureLevel));
+			pools.add(p);
+		}
+		List gcs = ManagementFactory.getGarbageCollectorMXBeans();
+		for (int i = 0 ; i < gcs.size() ; i++) {
+			GarbageCollectorMXBean gc = (GarbageCollectorMXBean) gcs.get(i);
+			List names = Arrays.asList(gc.getMemoryPoolNames());
+			for (int j = 0 ; j < pools.size() ; j++) {
+				if (names.contains(((MemoryPoolMXBean) pools.get(j)).getName())) {
+					collectors.add(gc);
+					break;
+				}
+			}
+		}
+		if (Dispatch.DEBUG)
+			System.out.println("Watching " + pools.size() + " pools at " + Dispatch.pressureLevel);
+		NotificationEmitter e = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+		e.addNotificationListener(new NotificationListener() {
+			public void handleNotification(Notification n, Object handback) {
+				if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(n.getType()))
+					raised = true;
+			}
+		}, null, null);
+	}
+	
+	static long collections() {
+		long n = 0;
+		for (int i = 0 ; i < collectors.size() ; i++)
+			n += ((GarbageCollectorMXBean) collectors.get(i)).getCollectionCount();
+		return n;
+	}
+	
+	// drops the graphs of the lowest priority of invariants that have any
+	static void relieve() {
+		raised = false;
+		int num = Dispatch.invariants.length, lowest = Integer.MAX_VALUE;
+		for (int i = 0 ; i < num ; i++) {
+			InvariantData d = Dispatch.invariant(i);
+			if (d != null && d.graphRoot != null && d.priority < lowest)
+				lowest = d.priority;
+		}
+		for (int i = 0 ; i < num ; i++) {
+			InvariantData d = Dispatch.invariant(i);
+			if (d != null && d.graphRoot != null && d.priority == lowest)
+				drop(d);
+		}
+		lastCollections = collections();
+	}
+	
+	// whether a dropped graph may be built again; 
+	// true at most once per collection
+	static boolean mayRebuild() {
+		if (raised)
+			return false;
+		long n = collections();
+		if (n == lastCollections)
+			return false;
+		for (int i = 0 ; i < pools.size() ; i++) {
+			MemoryPoolMXBean p = (MemoryPoolMXBean) pools.get(i);
+			if (p.getCollectionUsage().getUsed() > p.getCollectionUsageThreshold() * RECOVERED)
+				return false;
+		}
+		lastCollections = n;
+		return true;
+	}
+	
+	static void drop(InvariantData d) {
+		if (Dispatch.DEBUG)
+			System.out.println("Dropping the graph of invariant " + d.id + ", " + d.nodes + " nodes");
+		// checks deferred by a batch return the latest result 
+		// until the next check, which will run from scratch
+		ComputationNode root = d.graphRoot;
+		ComputationNode last = new ComputationNode(root.arguments, root.data);
+		last.result = root.result;
+		last.value = root.value;
+		last.computed = root.computed;
+		
+		EdgePool pool = d.uses;
+		for (OrderList.Group g = d.order.first ; g != null ; g = g.next) {
+			for (int i = 0 ; i < g.size ; i++) {
+				ComputationNode n = g.nodes[i];
+				for (int e = n.uselocs ; e != EdgePool.NIL ; e = pool.next[e])
+					pool.object[e].dropList(d.id);
+				n.data.memo.remove(n);
+			}
+		}
+		ArrayList live = Dispatch.liveFunctions();
+		for (int i = 0 ; i < live.size() ; i++) {
+			FunctionData fd = (FunctionData) live.get(i);
+			if (fd.invariantData == d) {
+				fd.memo.trim();
+				fd.releaseFree();
+			}
+		}
+		d.order = new OrderList();
+		d.uses = new EdgePool();
+		d.graphRoot = null;
+		d.nodes = 0;
+		d.evictAt = 0;
+		d.waiting.clear();
+		d.affected = 0;
+		d.counted = 0;
+		d.scratch = last;
+		d.scratchSpent = 0;
+		d.stale = true;
+		d.dropped = true;
+		d.drops++;
+	}
+}
@@ -0,0 +1,122 @@
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/*
+ * Priority queue of computation nodes in graph order, used to order 
+ * dirty nodes from the root down and to propagate changed results 
+ * from the leaves up. A node is in at most one queue at a time, and 
+ * at most once; the per-node queued flag makes the membership test O(1).
+ */
+
+package runtime;
+
+class NodeScheduler {
+	ComputationNode[] heap = new ComputationNode[64];
+	int size;
+	// true to hand out the deepest node first (upward propagation), 
+	// false to hand out the shallowest first (dirty pass)
+	boolean deepestFirst;
+	
+	NodeScheduler(boolean deepestFirst) {
+		this.deepestFirst = deepestFirst;
+	}
+	
+	int size() {
+		return size;
+	}
+	
+	// returns false if the node was already queued
+	boolean add(ComputationNode n) {
+		if (n.queued)
+			return false;
+		n.queued = true;
+		if (size == heap.length) {
+			ComputationNode[] nh = new ComputationNode[size * 2];
+			System.arraycopy(heap, 0, nh, 0, size);
+			heap = nh;
+		}
+		int i = size++;
+		while (i > 0) {
+			int p = (i - 1) >> 1;
+			if (! before(n, heap[p]))
+				break;
+			heap[i] = heap[p];
+			i = p;
+		}
+		heap[i] = n;
+		return true;
+	}
+	
+	ComputationNode remove() {
+		ComputationNode top = heap[0];
+		ComputationNode last = heap[--size];
+		heap[size] = null;
+		if (size > 0)
+			siftDown(0, last);
+		top.queued = false;
+		return top;
+	}
+	
+	// puts x at heap position i or below it, wherever it belongs
+	private void siftDown(int i, ComputationNode x) {
+		while (true) {
+			int c = 2*i + 1;
+			if (c >= size)
+				break;
+			if (c + 1 < size && before(heap[c + 1], heap[c]))
+				c++;
+			if (! before(heap[c], x))
+				break;
+			heap[i] = heap[c];
+			i = c;
+		}
+		heap[i] = x;
+	}
+	
+	// restores the heap order after queued nodes have been moved in the 
+	// graph order (see OrderList.moveAfter), in O(size)
+	void reorder() {
+		for (int i = (size >> 1) - 1 ; i >= 0 ; i--)
+			siftDown(i, heap[i]);
+	}
+	
+	void clear() {
+		for (int i = 0 ; i < size ; i++) {
+			heap[i].queued = false;
+			heap[i] = null;
+		}
+		size = 0;
+	}
+	
+	// empties the queue, unmarking its nodes as dirty
+	void clearDirty() {
+		for (int i = 0 ; i < size ; i++)
+			heap[i].dirty = false;
+		clear();
+	}
+	
+	private boolean before(ComputationNode a, ComputationNode b) {
+		return deepestFirst ? OrderList.before(b, a) : OrderList.before(a, b);
+	}
+}
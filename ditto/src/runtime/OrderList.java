@@ -0,0 +1,262 @@
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/*
+ * Topological order of an invariant's computation graph, kept as an 
+ * order-maintenance list: every node comes after all of its parents, 
+ * and two nodes are compared in constant time by their labels.
+ * 
+ * Labels have two levels, after Dietz and Sleator. Nodes are kept in 
+ * groups of at most GROUP_SIZE, with int labels local to the group, and 
+ * the groups in a list with long labels. Inserting into a group that 
+ * has no room left relabels just that group; a full group is split, and
+ * a new group that finds no gap in the labels relabels the smallest 
+ * enclosing range of labels that is sparse enough (Bender et al.,
+ * "Two simplified algorithms for maintaining order in a list").
+ * A group relabel costs O(GROUP_SIZE), and a split only comes every 
+ * GROUP_SIZE/2 inserts and relabels amortized O(log n) groups, so 
+ * inserts take amortized O(log n) time, with the log n term divided 
+ * by GROUP_SIZE/2.
+ */
+
+package runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+
+class OrderList {
+	static final int GROUP_SIZE = 64;
+	// gap left between the local labels of a freshly relabeled group
+	static final int LOCAL_GAP = Integer.MAX_VALUE / (2 * GROUP_SIZE);
+	// group labels lie in [0, 2^62)
+	static final int LABEL_BITS = 62;
+	// a range of 2^i group labels may hold up to DENSITY^i groups, 
+	// (2 / T)^i for the overflow threshold T = 1.5 of Bender et al.
+	static final double DENSITY = 2 / 1.5;
+	
+	static final class Group {
+		long label;
+		Group prev, next;
+		ComputationNode[] nodes = new ComputationNode[GROUP_SIZE];
+		int size;
+	}
+	
+	Group first;
+	int groups;
+	
+	static boolean before(ComputationNode a, ComputationNode b) {
+		if (a.group == b.group)
+			return a.label < b.label;
+		return a.group.label < b.group.label;
+	}
+	
+	static boolean ordered(ComputationNode n) {
+		return n.group != null;
+	}
+	
+	void insertFirst(ComputationNode x) {
+		if (first == null) {
+			first = new Group();
+			first.label = 1L << (LABEL_BITS - 1);
+			groups = 1;
+		}
+		insertAt(first, 0, x);
+	}
+	
+	void insertAfter(ComputationNode p, ComputationNode x) {
+		insertAt(p.group, indexOf(p) + 1, x);
+	}
+	
+	void remove(ComputationNode x) {
+		Group g = x.group;
+		int i = indexOf(x);
+		System.arraycopy(g.nodes, i + 1, g.nodes, i, g.size - i - 1);
+		g.nodes[--g.size] = null;
+		x.group = null;
+		if (g.size == 0) {
+			if (g.prev != null)
+				g.prev.next = g.next;
+			else
+				first = g.next;
+			if (g.next != null)
+				g.next.prev = g.prev;
+			groups--;
+		}
+	}
+	
+	// scratch for moveAfter, which runs on the checking thread only, 
+	// like prune; moves stamps the nodes a call has reached
+	static ArrayList move_nodes = new ArrayList();
+	static ArrayList move_stack = new ArrayList();
+	static int moves;
+	
+	static final Comparator byOrder = new Comparator() {
+		public int compare(Object a, Object b) {
+			return a == b ? 0 : (before((ComputationNode) a, (ComputationNode) b) ? -1 : 1);
+		}
+	};
+	
+	// makes p come before c, for a new edge from p to c: c and those of 
+	// its descendants that are not after p already move to just after p,
+	// keeping their order. only descendants are moved, since the
+	// children of a node are always known, unlike its parents.
+	void moveAfter(ComputationNode p, ComputationNode c) {
+		ArrayList moved = move_nodes;
+		ArrayList stack = move_stack;
+		int stamp = ++moves;
+		boolean queued = false;
+		stack.add(c);
+		c.moveStamp = stamp;
+		while (stack.size() > 0) {
+			ComputationNode n = (ComputationNode) stack.remove(stack.size() - 1);
+			moved.add(n);
+			queued |= n.queued;
+			for (int j = 0 ; j < n.children.length ; j++) {
+				ComputationNode k = n.children[j];
+				if (k != null && k.moveStamp != stamp && ordered(k) && before(k, p)) {
+					k.moveStamp = stamp;
+					stack.add(k);
+				}
+			}
+		}
+		Collections.sort(moved, byOrder);
+		if (Dispatch.DEBUG)
+			System.out.println("Moving " + moved.size() + " nodes after " + p.ptrString());
+		ComputationNode at = p;
+		for (int i = 0 ; i < moved.size() ; i++) {
+			ComputationNode n = (ComputationNode) moved.get(i);
+			remove(n);
+			insertAfter(at, n);
+			at = n;
+		}
+		moved.clear();
+		// a rerun during propagation can add an edge to a node that is 
+		// still queued, e.g. a dirty one further down; its new label may 
+		// no longer fit where it sits in the heap
+		if (queued) {
+			Dispatch.dirty_nodes.reorder();
+			Dispatch.propagate_nodes.reorder();
+		}
+	}
+	
+	static int indexOf(ComputationNode x) {
+		Group g = x.group;
+		int lo = 0, hi = g.size - 1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (g.nodes[mid].label < x.label)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+	
+	void insertAt(Group g, int i, ComputationNode x) {
+		if (g.size == GROUP_SIZE) {
+			Group h = split(g);
+			if (i > g.size) {
+				i -= g.size;
+				g = h;
+			}
+		}
+		System.arraycopy(g.nodes, i, g.nodes, i + 1, g.size - i);
+		g.nodes[i] = x;
+		g.size++;
+		x.group = g;
+		int lo = (i == 0 ? Integer.MIN_VALUE : g.nodes[i - 1].label);
+		int hi = (i == g.size - 1 ? Integer.MAX_VALUE : g.nodes[i + 1].label);
+		if (hi - (long) lo < 2)
+			relabel(g);
+		else
+			x.label = (int) ((lo + (long) hi) >> 1);
+	}
+	
+	// spaces the local labels of g evenly
+	static void relabel(Group g) {
+		int l = Integer.MIN_VALUE + LOCAL_GAP;
+		for (int i = 0 ; i < g.size ; i++, l += LOCAL_GAP)
+			g.nodes[i].label = l;
+	}
+	
+	// moves the second half of g into a new group after it
+	Group split(Group g) {
+		Group h = new Group();
+		int half = g.size / 2;
+		h.size = g.size - half;
+		System.arraycopy(g.nodes, half, h.nodes, 0, h.size);
+		Arrays.fill(g.nodes, half, g.size, null);
+		g.size = half;
+		for (int i = 0 ; i < h.size ; i++)
+			h.nodes[i].group = h;
+		relabel(g);
+		relabel(h);
+		h.prev = g;
+		h.next = g.next;
+		if (g.next != null)
+			g.next.prev = h;
+		g.next = h;
+		groups++;
+		long hi = (h.next == null ? 1L << LABEL_BITS : h.next.label);
+		if (hi - g.label >= 2)
+			h.label = g.label + ((hi - g.label) >> 1);
+		else
+			relabelAround(h);
+		return h;
+	}
+	
+	// finds the smallest aligned range of labels around g's that is 
+	// sparse enough, and spreads the groups in it evenly
+	void relabelAround(Group g) {
+		// g has no label of its own yet; it sits right after prev
+		long at = (g.prev == null ? 0 : g.prev.label);
+		Group lo = g, hi = g;
+		int count = 1;
+		double limit = 1;
+		for (int i = 1 ; i <= LABEL_BITS ; i++) {
+			limit *= DENSITY;
+			long base = at & -(1L << i), end = base + (1L << i);
+			while (lo.prev != null && lo.prev.label >= base) {
+				lo = lo.prev;
+				count++;
+			}
+			while (hi.next != null && hi.next.label < end) {
+				hi = hi.next;
+				count++;
+			}
+			if (count < limit && count < (1L << i) || i == LABEL_BITS) {
+				long step = (1L << i) / (count + 1);
+				long l = base + step;
+				for (Group x = lo ; ; x = x.next, l += step) {
+					x.label = l;
+					if (x == hi)
+						break;
+				}
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/*
+ * Parallel version of Dispatch.recomputeDiffering. Once the dirty pass 
+ * has rerun its nodes on the caller thread, the remaining work is to 
+ * push changed results up the graph with runOnce, which only reads 
+ * cached child results and never touches the graph itself. Nodes whose 
+ * changed descendants lie in disjoint subtrees can therefore be 
+ * recomputed concurrently. 
+ *
+ * The region above the differing nodes is marked first, and each node 
+ * in it counts its outstanding child edges. A node is handled by whichever 
+ * task finishes its last child: it is recomputed if any child changed, 
+ * and otherwise just passes "unchanged" up, so every node runs at most 
+ * once and only after all of its children, exactly as in the serial pass.
+ * A node whose runOnce copy needs a child it does not have (see 
+ * Dispatch.MissingChild) counts as changed; it is rerun, and whatever 
+ * that changes propagated, on the caller thread once the tasks are done.
+ */
+
+package runtime;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+class ParallelPropagation {
+	static final AtomicIntegerFieldUpdater pendingUpdater = 
+		AtomicIntegerFieldUpdater.newUpdater(ComputationNode.class, "pending");
+	static ForkJoinPool pool;
+	static ArrayList region = new ArrayList();
+	// nodes that have to be rerun on the caller thread
+	static ArrayList missing = new ArrayList();
+	
+	static ForkJoinPool pool() {
+		if (pool == null) {
+			int n = Integer.getInteger("ditto.parallelism", Runtime.getRuntime().availableProcessors()).intValue();
+			pool = new ForkJoinPool(n);
+		}
+		return pool;
+	}
+	
+	static void propagate(ArrayList differing) {
+		// mark every ancestor of a differing node and count its region children
+		for (int i = 0 ; i < differing.size() ; i++) {
+			ComputationNode c = (ComputationNode) differing.get(i);
+			if (! c.inRegion) {
+				c.inRegion = true;
+				region.add(c);
+			}
+			c.seed = true;
+		}
+		for (int i = 0 ; i < region.size() ; i++) {
+			ComputationNode c = (ComputationNode) region.get(i);
+			for (int j = 0 ; j < c.parents_last ; j++) {
+				ComputationNode p = c.parents[j];
+				if (p == null)
+					continue;
+				p.pending++;
+				if (! p.inRegion) {
+					p.inRegion = true;
+					region.add(p);
+				}
+			}
+		}
+		if (Dispatch.DEBUG)
+			System.out.println("Parallel propagation over " + region.size() + " nodes from " + differing.size());
+		Dispatch.work += region.size();
+		
+		ArrayList ready = new ArrayList();
+		for (int i = 0 ; i < differing.size() ; i++) {
+			ComputationNode c = (ComputationNode) differing.get(i);
+			// a differing node below another one waits for its children
+			if (c.pending == 0)
+				ready.add(new NodeTask(c, true));
+		}
+		try {
+			pool().invoke(new StartTask(ready));
+		} finally {
+			for (int i = 0 ; i < region.size() ; i++) {
+				ComputationNode c = (ComputationNode) region.get(i);
+				c.inRegion = false;
+				c.seed = false;
+				c.childChanged = false;
+				c.pending = 0;
+			}
+			region.clear();
+		}
+		if (missing.size() > 0) {
+			for (int i = 0 ; i < missing.size() ; i++)
+				Dispatch.propagate_nodes.add((ComputationNode) missing.get(i));
+			missing.clear();
+			Dispatch.recomputeDiffering(Dispatch.propagate_nodes);
+		}
+	}
+	
+	static class StartTask extends RecursiveAction {
+		private static final long serialVersionUID = 6605374042694311489L;
+		ArrayList tasks;
+		
+		StartTask(ArrayList tasks) {
+			this.tasks = tasks;
+		}
+		
+		protected void compute() {
+			invokeAll(tasks);
+		}
+	}
+	
+	static class NodeTask extends RecursiveAction {
+		private static final long serialVersionUID = 3764259951187930611L;
+		ComputationNode node;
+		// true for nodes already rerun by the dirty pass
+		boolean finished;
+		
+		NodeTask(ComputationNode node, boolean finished) {
+			this.node = node;
+			this.finished = finished;
+		}
+		
+		protected void compute() {
+			ArrayList forked = null;
+			ComputationNode c = node;
+			boolean done = finished;
+			// walk up one ready parent inline, fork the rest
+			while (c != null) {
+				boolean changed = done || recompute(c);
+				ComputationNode next = null;
+				for (int i = 0 ; i < c.parents_last ; i++) {
+					ComputationNode p = c.parents[i];
+					if (p == null)
+						continue;
+					if (changed)
+						p.childChanged = true;
+					if (pendingUpdater.decrementAndGet(p) != 0)
+						continue;
+					if (next == null)
+						next = p;
+					else {
+						if (forked == null)
+							forked = new ArrayList();
+						NodeTask t = new NodeTask(p, false);
+						t.fork();
+						forked.add(t);
+					}
+				}
+				c = next;
+				done = false;
+			}
+			if (forked != null)
+				for (int i = 0 ; i < forked.size() ; i++)
+					((NodeTask) forked.get(i)).join();
+		}
+		
+		// all children are final here; returns whether c's result changed
+		static boolean recompute(ComputationNode c) {
+			boolean changed = false;
+			if (c.childChanged) {
+				c.dirty = true;
+				Object oldres = c.result;
+				long oldvalue = c.value;
+				try {
+					c.data.recompute(c);
+					changed = ! c.sameResult(oldres, oldvalue);
+				} catch (Dispatch.MissingChild e) {
+					synchronized (missing) {
+						missing.add(c);
+					}
+					changed = true;
+				}
+				c.dirty = false;
+			}
+			// a node that was rerun by the dirty pass always counts as changed
+			return changed || c.seed;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/*
+ * The data class of a function with a primitive result. The generated
+ * subclass has unboxed versions of run, runOnce and runScratch, which 
+ * keep the result in ComputationNode.value; the boxed ones return it 
+ * boxed, for callers that want an Object.
+ */
+
+package runtime;
+
+public abstract class ValueFunctionData extends FunctionData {
+	public abstract long runValue(Object[] args, ComputationNode parent);
+	public abstract long runOnceValue(Object[] args, Object[] children);
+	public abstract long runScratchValue(Object[] args);
+	
+	public ValueFunctionData(Object ds, InvariantData invd) {
+		super(ds, invd);
+	}
+	
+	void runFor(Object[] args, ComputationNode parent) {
+		runValue(args, parent);
+	}
+	
+	void runScratchFor(ComputationNode c) {
+		c.value = runScratchValue(c.arguments);
+	}
+	
+	void recompute(ComputationNode c) {
+		c.value = runOnceValue(c.arguments, c.children);
+	}
+}
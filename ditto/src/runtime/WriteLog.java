@@ -0,0 +1,111 @@
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+/*
+ * Write-barrier log for a single mutator thread. Barriers append
+ * written objects to the log of the thread doing the write, so 
+ * mutators never share a counter or a cache line; Dispatch.distribute
+ * drains the logs of all threads at check time.
+ * The log is a list of fixed-size chunks, so it never overflows;
+ * drained chunks are kept around for reuse. Chunks that an 
+ * asynchronous checker drains come back through a queue, since the
+ * checker is not the thread that owns the log.
+ */
+
+package runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class WriteLog {
+	static final int CHUNK_SIZE = 1024;
+	static final int MAX_SPARE_CHUNKS = 16;
+	
+	// the chunk currently being filled
+	public IncObject[] written = new IncObject[CHUNK_SIZE];
+	public int count;
+	ArrayList full = new ArrayList();
+	ArrayList spare = new ArrayList();
+	// chunks given back by the checker thread, already cleared
+	ConcurrentLinkedQueue returned = new ConcurrentLinkedQueue();
+	// the thread that logs here; a finished one is held 
+	// until the next distribute() drops its log
+	final Thread thread;
+	
+	WriteLog(Thread t) {
+		thread = t;
+	}
+	
+	// slow path of the barrier: the current chunk is full
+	void spill() {
+		full.add(written);
+		written = freshChunk();
+		count = 0;
+	}
+	
+	// a cleared chunk to log into; spare ones first, then ones the 
+	// checker has given back, then a new one
+	IncObject[] freshChunk() {
+		Object c;
+		while (spare.size() < MAX_SPARE_CHUNKS && (c = returned.poll()) != null)
+			spare.add(c);
+		int s = spare.size();
+		return (s > 0 ? (IncObject[]) spare.remove(s - 1) : new IncObject[CHUNK_SIZE]);
+	}
+	
+	// hands a drained chunk back for reuse
+	void recycle(IncObject[] chunk) {
+		if (spare.size() < MAX_SPARE_CHUNKS) {
+			Arrays.fill(chunk, null);
+			spare.add(chunk);
+		}
+	}
+	
+	// same, from the checker thread, for the first count entries of a
+	// chunk it got from detach(); the owner picks it up in freshChunk()
+	void giveBack(IncObject[] chunk, int count) {
+		if (returned.size() < MAX_SPARE_CHUNKS) {
+			Arrays.fill(chunk, 0, count, null);
+			returned.add(chunk);
+		}
+	}
+	
+	// gives away everything logged so far, for a checker thread to 
+	// drain on its own: the full chunks followed by the current one, 
+	// which holds count entries. the log starts over with a fresh chunk.
+	// called by the thread submitting a check, which need not be the 
+	// owner (see AsyncChecker.submit)
+	ArrayList detach() {
+		ArrayList taken = full;
+		taken.add(written);
+		full = new ArrayList();
+		written = freshChunk();
+		return taken;
+	}
+	
+	boolean ownerAlive() {
+		return thread.isAlive();
+	}
+}
@@ -0,0 +1,70 @@
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package test;
+
+/*
+ * Fixture for TestDriver's immutable mode: a constructor with the
+ * field writes Transform.isImmutable has to tell apart. Fields named
+ * fixed* are only ever initialized on this; the others are written
+ * through some other receiver, or possibly so.
+ */
+public class ImmutableFields {
+	final int fixedFinal;
+	int fixedPlain;
+	int fixedChoice;
+	int fixedBranches;
+	long fixedWide;
+	ImmutableFields fixedCall;
+	Object[] fixedArray;
+	int eitherReceiver;
+	int otherReceiver;
+	int callReceiver;
+	int laterWrite;
+
+	ImmutableFields(ImmutableFields o, boolean cond, int x) {
+		fixedFinal = x;
+		this.fixedPlain = x;
+		this.fixedChoice = cond ? x : x + 1;
+		if (cond)
+			fixedBranches = 1;
+		else
+			fixedBranches = 2;
+		fixedWide = (long) x * 3L + o.fixedWide;
+		fixedCall = o.self();
+		fixedArray = new Object[] { o, new ImmutableFields(o, cond, x) };
+		(cond ? o : this).eitherReceiver = x;
+		o.otherReceiver = x;
+		this.self().callReceiver = x;
+		laterWrite = x;
+	}
+
+	ImmutableFields self() {
+		return this;
+	}
+
+	void set(int x) {
+		laterWrite = x;
+	}
+}
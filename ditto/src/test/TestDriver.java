@@ -1,296 +1,774 @@
-/* 
-Copyright (c) 2007, AJ Shankar
-
-All rights reserved.
-
-Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
-
-    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
-    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
-    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
-
-THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
-"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
-LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
-A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
-CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
-EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
-PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
-PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
-LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
-NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
-SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
-*/
-
-
-/**
- * The main driver function for running tests on Ditto.
- */
-package test;
-
-import runtime.Dispatch;
-
-import java.util.Random;
-/**
- * @author aj
- *
- */
-public class TestDriver {
-	static Random r = new Random(42);
-	/**
-	 * @param args
-	 */
-	public static void main(String[] args) {
-		if (args.length < 2) {
-			System.out.println("Usage: TestDriver.main [num elems] [which test] [skip invariants]");
-			System.exit(1);
-		}
-		int n = Integer.parseInt(args[0]);
-		int which = Integer.parseInt(args[1]);
-		boolean do_invariants = true;
-		if (args.length > 2)
-			do_invariants = Integer.parseInt(args[2]) != 1;
-		
-//		int off = 43;
-//		for (int q = off ; q < off + 31 ; q++) {
-//			System.out.println("Q is " + q);
-//			runRBTree(q, 100, do_invariants);
-//		}
-		
-		System.out.println("Do invariants is " + do_invariants);
-		System.out.println("n is " + n);
-		long start = 0;
-		switch (which) {
-		case 0:
-			start = runList(n, 10000, do_invariants);
-			break;
-		case 1:
-			start = runTree(n, 10000, do_invariants);
-			break;
-		case 2:
-			start = runAssocList(n, 10000, do_invariants);
-			break;
-		case 3:
-			start = runRBTree(n, 10000, do_invariants);
-			break;
-		case 4:
-			start = runHash(n, 10000, do_invariants);
-			break;
-		}
-
-		long end = System.currentTimeMillis();
-		System.out.println("Total time: " + (end - start));
-		
-		System.out.println("InvCount is " + Dispatch.invCount);
-		
-		System.out.println("Done with all operations.");
-	}
-
-	private static long runRBTree(int n, int reps, boolean do_invariants) {
-		System.out.println("Performing red-black tree tests");
-		TreeMap t = new TreeMap();
-		t.doInvariants = do_invariants;
-		boolean[] can_remove = new boolean[n*10];
-		int[] removed = new int[reps];
-		int r_head = 0, r_tail = 0, big = n;
-		for (int i = 0 ; i < n ; i++) {
-			t.invariants();
-			//System.out.println("Integer is " + i);
-			t.put(i, n);
-			can_remove[i] = true;
-			t.invariants();
-		}
-		System.out.println("InvCount before test is " + Dispatch.invCount);
-		int adds = 0;
-		long start = System.currentTimeMillis();
-		for (int j = 0 ; j < reps ; j++) {
-			//if (j%1 == 0) System.out.println("Size is " + t.size() + " with +" + (2*adds - j) + " adds");
-			t.invariants();
-			int which = rnd(2);
-			switch (which) {
-			case 0:
-				int toremove = rnd(n);
-				int it = 0;
-				while (! can_remove[toremove]) {
-					toremove = rnd(big);
-					it++;
-				}
-				can_remove[toremove] = false;
-				//if (it > 5) System.out.println("it is " + it);
-				removed[r_tail++] = toremove;
-//				System.out.println("---- Removing " + toremove);
-				t.remove(toremove);
-				break;
-			case 1:
-				int h;
-				if (r_head == r_tail)	{
-					h = big++;
-				} else {
-					h = removed[r_head++];
-				}
-				can_remove[h] = true;
-				adds++;
-				//System.out.println("---- Adding " + h);
-				t.put(h, n);
-				break;
-			}
-			t.invariants();
-		}
-		//t.barf();
-		//t.invariants();
-		System.out.println(adds + " adds of " + reps + " total; size is " + t.size());
-		return start;
-	}
-	
-	private static long runTree(int n, int reps, boolean do_invariants) {
-		System.out.println("Performing ordered tree tests");
-		OrderedIntTree t = new OrderedIntTree();
-	  System.out.println("Inserting " + n + " elements into tree...");
-		t.doInvariants = do_invariants;
-		long start = System.currentTimeMillis();
-		for (int i = 0 ; i < n ; i++) {
-			t.insert(rnd(n));
-			//t.insert((i+(n/2))%n);
-		}
-
-		//System.out.println("Barfing...");
-		//t.barf();
-		return start;
-	}
-	
-	private static long runList(int n, int reps, boolean do_invariants) {
-		System.out.println("Performing ordered list tests");
-		OrderedIntList l = new OrderedIntList();
-	  System.out.println("Inserting " + n + " elements into list...");
-		l.doInvariants = do_invariants;
-		int[] added = new int[n];
-		for (int i = 0 ; i < n ; i++) {
-			l.insert(i);
-			added[i]++;
-		}
-		System.out.println("Starting real test");
-		int adds = 0;
-		long start = System.currentTimeMillis();
-		for (int j = 0 ; j < reps ; j++) {
-			//if (j%10 == 0) System.out.println("Size is " + l.size + " with +" + (2*adds - j) + " adds");
-			int which = rnd(4);
-			switch (which) {
-			case 0:
-				int toremove = rnd(n);
-				while (added[toremove] == 0) {
-					toremove = rnd(n);
-				}
-		//		System.out.println("Removing " + toremove);
-				added[toremove]--;
-				l.remove(toremove);
-				break;
-			case 1:
-	//			System.out.println("Shifting");
-				added[l.shift()]--;
-				break;
-			default:
-				adds++;
-				int toadd = rnd(n);
-				added[toadd]++;
-//			System.out.println("Adding " + toadd);
-				l.insert(toadd);
-				break;
-			}
-		}
-		System.out.println(adds + " adds of " + reps + " total " + l.size());
-		//l.barf();
-
-		return start;	
-  }
-	
-	private static long runHash(int n, int reps, boolean do_invariants) {
-		System.out.println("Performing hash map tests");
-		IntHashSet m = new IntHashSet(n);
-	  System.out.println("Inserting " + n + " elements into hash...");
-		m.doInvariants = do_invariants;
-		int[] added = new int[n];
-		for (int i = 0 ; i < n ; i++) {
-			//System.out.println("Inserting " + i);
-			m.insert(i);
-			added[i]++;
-		}
-		System.out.println("Starting real test");
-		int adds = 0;
-		long start = System.currentTimeMillis();
-		for (int j = 0 ; j < reps ; j++) {
-			//if (j%10 == 0) System.out.println("Size is " + m.size + " with +" + (2*adds - j) + " adds");
-			int which = rnd(2);
-			switch (which) {
-			case 0:
-				int toremove = rnd(n);
-				while (added[toremove] == 0) {
-					toremove = rnd(n);
-				}
-				//System.out.print("Removing " + toremove + " ");
-				added[toremove]--;
-				m.remove(toremove);
-				break;
-			case 1:
-				adds++;
-				int toadd = rnd(n);
-				added[toadd]++;
-				//System.out.print("Adding " + toadd + "   ");
-				m.insert(toadd);
-				break;
-			}
-		}
-
-		//System.out.println("Barfing...");
-		//m.barf();
-		System.out.println(adds + " adds of " + reps + " total; size is " + m.size);
-
-		return start;	
-  }
-
-	private static int rnd(int n) {
-		return (r.nextInt(n));
-	}
-	
-	private static long runAssocList(int n, int reps, boolean do_invariants) {
-		System.out.println("Performing assoc list tests");
-		AssocList a = new AssocList();
-		a.doInvariants = do_invariants;
-	  System.out.println("Inserting " + n + " elements into list...");
-		int[] added = new int[n];
-	  for (int i = 0 ; i < n ; i++) {
-			a.insert(i, i+1);
-			added[i]++;
-		}
-	  System.out.println("Adding done");
-		long start = System.currentTimeMillis();
-		int adds = 0;
-		for (int j = 0 ; j < reps ; j++) {
-			//if (j%1 == 0) System.out.println("Size is " + a.size + " with +" + (2*adds - j) + " adds");
-			int which = rnd(2);
-			switch (which) {
-			case 0:
-				if (a.size == 0)
-					continue;
-				int toremove = rnd(n);
-				while (added[toremove] == 0) {
-					toremove = rnd(n);
-				}
-				//System.out.print("Removing " + toremove + " ");
-				added[toremove]--;
-				a.remove(toremove);
-				break;
-			case 1:
-				adds++;
-				int toadd = rnd(n);
-				added[toadd]++;
-				//System.out.print("Adding " + toadd + "   ");
-				a.insert(toadd, n);
-				break;
-			}
-		}
-		//a.barf();
-		System.out.println(adds + " adds of " + reps + " total; size is " + a.size);
-		return start;
-	}
-}
-
+/* 
+Copyright (c) 2007, AJ Shankar
+
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+
+    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in the documentation and/or other materials provided with the distribution.
+    * Neither the name of the <ORGANIZATION> nor the names of its contributors may be used to endorse or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+
+/**
+ * The main driver function for running tests on Ditto.
+ */
+package test;
+
+import incrementalizer.Transform;
+import runtime.CheckListener;
+import runtime.Dispatch;
+import runtime.FunctionData;
+
+import java.util.ArrayList;
+import java.util.Random;
+/**
+ * @author aj
+ *
+ */
+public class TestDriver {
+	static Random r = new Random(42);
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println("Usage: TestDriver.main [num elems] [which test] [skip invariants]");
+			System.exit(1);
+		}
+		int n = Integer.parseInt(args[0]);
+		int which = Integer.parseInt(args[1]);
+		boolean do_invariants = true;
+		if (args.length > 2)
+			do_invariants = Integer.parseInt(args[2]) != 1;
+		
+//		int off = 43;
+//		for (int q = off ; q < off + 31 ; q++) {
+//			System.out.println("Q is " + q);
+//			runRBTree(q, 100, do_invariants);
+//		}
+		
+		System.out.println("Do invariants is " + do_invariants);
+		System.out.println("n is " + n);
+		long start = 0;
+		switch (which) {
+		case 0:
+			start = runList(n, 10000, do_invariants);
+			break;
+		case 1:
+			start = runTree(n, 10000, do_invariants);
+			break;
+		case 2:
+			start = runAssocList(n, 10000, do_invariants);
+			break;
+		case 3:
+			start = runRBTree(n, 10000, do_invariants);
+			break;
+		case 4:
+			start = runHash(n, 10000, do_invariants);
+			break;
+		// the rest check Ditto itself rather than time it, 
+		// and exit with 1 if it gets something wrong
+		case 5:
+			start = runOracle(n);
+			break;
+		case 6:
+			start = runRetention(n);
+			break;
+		case 7:
+			start = runBarf(n);
+			break;
+		case 8:
+			start = runImmutable();
+			break;
+		case 9:
+			start = runAsync(n);
+			break;
+		}
+
+		long end = System.currentTimeMillis();
+		System.out.println("Total time: " + (end - start));
+		
+		System.out.println("InvCount is " + Dispatch.invCount);
+		
+		System.out.println("Done with all operations.");
+	}
+
+	private static long runRBTree(int n, int reps, boolean do_invariants) {
+		System.out.println("Performing red-black tree tests");
+		TreeMap t = new TreeMap();
+		t.doInvariants = do_invariants;
+		boolean[] can_remove = new boolean[n*10];
+		int[] removed = new int[reps];
+		int r_head = 0, r_tail = 0, big = n;
+		for (int i = 0 ; i < n ; i++) {
+			t.invariants();
+			//System.out.println("Integer is " + i);
+			t.put(i, n);
+			can_remove[i] = true;
+			t.invariants();
+		}
+		System.out.println("InvCount before test is " + Dispatch.invCount);
+		int adds = 0;
+		long start = System.currentTimeMillis();
+		for (int j = 0 ; j < reps ; j++) {
+			//if (j%1 == 0) System.out.println("Size is " + t.size() + " with +" + (2*adds - j) + " adds");
+			t.invariants();
+			int which = rnd(2);
+			switch (which) {
+			case 0:
+				int toremove = rnd(n);
+				int it = 0;
+				while (! can_remove[toremove]) {
+					toremove = rnd(big);
+					it++;
+				}
+				can_remove[toremove] = false;
+				//if (it > 5) System.out.println("it is " + it);
+				removed[r_tail++] = toremove;
+//				System.out.println("---- Removing " + toremove);
+				t.remove(toremove);
+				break;
+			case 1:
+				int h;
+				if (r_head == r_tail)	{
+					h = big++;
+				} else {
+					h = removed[r_head++];
+				}
+				can_remove[h] = true;
+				adds++;
+				//System.out.println("---- Adding " + h);
+				t.put(h, n);
+				break;
+			}
+			t.invariants();
+		}
+		//t.barf();
+		//t.invariants();
+		System.out.println(adds + " adds of " + reps + " total; size is " + t.size());
+		return start;
+	}
+	
+	private static long runTree(int n, int reps, boolean do_invariants) {
+		System.out.println("Performing ordered tree tests");
+		OrderedIntTree t = new OrderedIntTree();
+	  System.out.println("Inserting " + n + " elements into tree...");
+		t.doInvariants = do_invariants;
+		long start = System.currentTimeMillis();
+		for (int i = 0 ; i < n ; i++) {
+			t.insert(rnd(n));
+			//t.insert((i+(n/2))%n);
+		}
+
+		//System.out.println("Barfing...");
+		//t.barf();
+		return start;
+	}
+	
+	private static long runList(int n, int reps, boolean do_invariants) {
+		System.out.println("Performing ordered list tests");
+		OrderedIntList l = new OrderedIntList();
+	  System.out.println("Inserting " + n + " elements into list...");
+		l.doInvariants = do_invariants;
+		int[] added = new int[n];
+		for (int i = 0 ; i < n ; i++) {
+			l.insert(i);
+			added[i]++;
+		}
+		System.out.println("Starting real test");
+		int adds = 0;
+		long start = System.currentTimeMillis();
+		for (int j = 0 ; j < reps ; j++) {
+			//if (j%10 == 0) System.out.println("Size is " + l.size + " with +" + (2*adds - j) + " adds");
+			int which = rnd(4);
+			switch (which) {
+			case 0:
+				int toremove = rnd(n);
+				while (added[toremove] == 0) {
+					toremove = rnd(n);
+				}
+		//		System.out.println("Removing " + toremove);
+				added[toremove]--;
+				l.remove(toremove);
+				break;
+			case 1:
+	//			System.out.println("Shifting");
+				added[l.shift()]--;
+				break;
+			default:
+				adds++;
+				int toadd = rnd(n);
+				added[toadd]++;
+//			System.out.println("Adding " + toadd);
+				l.insert(toadd);
+				break;
+			}
+		}
+		System.out.println(adds + " adds of " + reps + " total " + l.size());
+		//l.barf();
+
+		return start;	
+  }
+	
+	private static long runHash(int n, int reps, boolean do_invariants) {
+		System.out.println("Performing hash map tests");
+		IntHashSet m = new IntHashSet(n);
+	  System.out.println("Inserting " + n + " elements into hash...");
+		m.doInvariants = do_invariants;
+		int[] added = new int[n];
+		for (int i = 0 ; i < n ; i++) {
+			//System.out.println("Inserting " + i);
+			m.insert(i);
+			added[i]++;
+		}
+		System.out.println("Starting real test");
+		int adds = 0;
+		long start = System.currentTimeMillis();
+		for (int j = 0 ; j < reps ; j++) {
+			//if (j%10 == 0) System.out.println("Size is " + m.size + " with +" + (2*adds - j) + " adds");
+			int which = rnd(2);
+			switch (which) {
+			case 0:
+				int toremove = rnd(n);
+				while (added[toremove] == 0) {
+					toremove = rnd(n);
+				}
+				//System.out.print("Removing " + toremove + " ");
+				added[toremove]--;
+				m.remove(toremove);
+				break;
+			case 1:
+				adds++;
+				int toadd = rnd(n);
+				added[toadd]++;
+				//System.out.print("Adding " + toadd + "   ");
+				m.insert(toadd);
+				break;
+			}
+		}
+
+		//System.out.println("Barfing...");
+		//m.barf();
+		System.out.println(adds + " adds of " + reps + " total; size is " + m.size);
+
+		return start;	
+  }
+
+	private static int rnd(int n) {
+		return (r.nextInt(n));
+	}
+	
+	static int checks, mismatches;
+	
+	private static void check(String what, boolean incremental, boolean plain) {
+		checks++;
+		if (incremental != plain) {
+			if (mismatches++ < 10)
+				System.out.println("Mismatch in " + what + " at check " + checks + 
+						": incremental " + incremental + ", from scratch " + plain);
+		}
+	}
+	
+	// makes n random changes to each structure, through its methods and 
+	// by writing its fields directly, and compares what the invariants 
+	// return incrementally with a plain recursive computation. about a 
+	// third of the changes are checked together with the next one.
+	// all of it is done once with the runtime options as given, then 
+	// once more with each of the options below turned on in their place
+	private static long runOracle(int n) {
+		System.out.println("Performing oracle tests");
+		long start = System.currentTimeMillis();
+		int budget = Dispatch.nodeBudget, parallel = Dispatch.parallelThreshold;
+		int recycle = Dispatch.recycleNodes;
+		boolean fallback = Dispatch.fallback;
+		String[] rounds = { "as given", "budget 50", "fallback", "parallel", "recycling" };
+		for (int round = 0 ; round < rounds.length ; round++) {
+			Dispatch.nodeBudget = budget;
+			Dispatch.fallback = fallback;
+			Dispatch.parallelThreshold = parallel;
+			Dispatch.recycleNodes = recycle;
+			switch (round) {
+			case 1:
+				Dispatch.nodeBudget = 50;
+				break;
+			case 2:
+				Dispatch.fallback = true;
+				break;
+			case 3:
+				Dispatch.parallelThreshold = 1;
+				break;
+			case 4:
+				Dispatch.recycleNodes = 64;
+				break;
+			}
+			int before = checks, missed = mismatches;
+			oracleRepairedTree();
+			oracleTree(n);
+			oracleList(n);
+			oracleAssoc(n);
+			oracleHash(n);
+			System.out.println(rounds[round] + ": " + (checks - before) + " checks, " + 
+					(mismatches - missed) + " wrong");
+		}
+		Dispatch.nodeBudget = budget;
+		Dispatch.fallback = fallback;
+		Dispatch.parallelThreshold = parallel;
+		Dispatch.recycleNodes = recycle;
+		System.out.println(checks + " checks, " + mismatches + " mismatches");
+		if (mismatches > 0)
+			System.exit(1);
+		return start;
+	}
+	
+	private static boolean ordered(IntTreeElem e, int lower, int upper) {
+		if (e == null)
+			return true;
+		if (e.value <= lower || e.value >= upper)
+			return false;
+		if (e.left != null && e.value <= e.left.value)
+			return false;
+		if (e.right != null && e.value >= e.right.value)
+			return false;
+		return (e.left == null || ordered(e.left, lower, e.value)) && 
+				(e.right == null || ordered(e.right, e.value, upper));
+	}
+	
+	private static void collect(IntTreeElem e, ArrayList l) {
+		if (e == null)
+			return;
+		l.add(e);
+		collect(e.left, l);
+		collect(e.right, l);
+	}
+	
+	// a subtree that turns ordered again makes isOrdered call a 
+	// function it skipped before, for a node that was not rerun
+	private static void oracleRepairedTree() {
+		OrderedIntTree t = new OrderedIntTree();
+		t.doInvariants = false;
+		t.insert(50);
+		t.insert(25);
+		t.insert(75);
+		t.insert(40);
+		IntTreeElem e = t.root.left.right;
+		int[] values = { 40, 60, 40 };
+		for (int i = 0 ; i < values.length ; i++) {
+			e.value = values[i];
+			// dirty the root, so that it is rerun while unordered 
+			t.root.value = 50;
+			check("repaired tree", t.isOrdered(t.root, Integer.MIN_VALUE, Integer.MAX_VALUE), 
+					ordered(t.root, Integer.MIN_VALUE, Integer.MAX_VALUE));
+		}
+	}
+	
+	// one random change to t, through insert or by writing its fields
+	private static void changeTree(OrderedIntTree t) {
+		ArrayList l = new ArrayList();
+		collect(t.root, l);
+		int op = rnd(10);
+		if (op < 6 || l.size() < 3)
+			t.insert(rnd(1000));
+		else if (op < 8)
+			((IntTreeElem) l.get(rnd(l.size()))).value = rnd(1000);
+		else if (op < 9) {
+			IntTreeElem e = (IntTreeElem) l.get(rnd(l.size()));
+			IntTreeElem x = e.left;
+			e.left = e.right;
+			e.right = x;
+		} else {
+			IntTreeElem e = (IntTreeElem) l.get(1 + rnd(l.size() - 1));
+			if (r.nextBoolean())
+				e.left = null;
+			else
+				e.right = null;
+		}
+	}
+	
+	private static void oracleTree(int steps) {
+		OrderedIntTree t = new OrderedIntTree();
+		t.doInvariants = false;
+		for (int i = 0 ; i < steps ; i++) {
+			changeTree(t);
+			if (rnd(3) == 0)
+				continue;
+			check("tree isOrdered", t.isOrdered(t.root, Integer.MIN_VALUE, Integer.MAX_VALUE), 
+					ordered(t.root, Integer.MIN_VALUE, Integer.MAX_VALUE));
+			check("tree sumNodes", t.sumNodes(t.root) == t.realSumNodes(t.root).intValue(), true);
+		}
+	}
+	
+	private static void oracleList(int steps) {
+		OrderedIntList t = new OrderedIntList();
+		t.doInvariants = false;
+		for (int i = 0 ; i < steps ; i++) {
+			int op = rnd(10);
+			int size = t.size();
+			if (op < 5 || size < 3)
+				t.insert(rnd(1000));
+			else if (op < 7)
+				t.remove(rnd(1000));
+			else if (op < 8)
+				t.shift();
+			else {
+				IntListElem e = t.head;
+				for (int k = rnd(size) ; k > 0 ; k--)
+					e = e.next;
+				e.value = rnd(1000);
+			}
+			if (rnd(3) == 0)
+				continue;
+			boolean ordered = true;
+			for (IntListElem e = t.head ; e != null && e.next != null ; e = e.next)
+				if (e.value > e.next.value)
+					ordered = false;
+			check("list isOrdered", t.isOrdered(t.head), ordered);
+		}
+	}
+	
+	private static void oracleAssoc(int steps) {
+		AssocList a = new AssocList();
+		a.doInvariants = false;
+		for (int i = 0 ; i < steps ; i++) {
+			int op = rnd(10);
+			int size = 0;
+			for (ListElem e = a.head ; e != null ; e = e.next)
+				size++;
+			if (op < 5 || size < 4)
+				a.insert(rnd(100), rnd(100));
+			else {
+				ListElem e = a.head;
+				for (int k = rnd(size - 1) ; k > 0 ; k--)
+					e = e.next;
+				if (op < 7)
+					e.next = e.next.next;
+				else if (op < 8)
+					e.value = (r.nextBoolean() ? null : Integer.valueOf(3));
+				else {
+					ListElem o = e.next;
+					e.next = new ListElem(Integer.valueOf(1));
+					if (r.nextBoolean())
+						e.next.next = o;
+				}
+			}
+			if (rnd(3) == 0)
+				continue;
+			size = 0;
+			for (ListElem e = a.head ; e != null ; e = e.next)
+				size++;
+			check("assoc isEven", a.isEven(a.head), size % 2 == 0);
+		}
+	}
+	
+	private static void oracleHash(int steps) {
+		IntHashSet m = new IntHashSet(200);
+		m.doInvariants = false;
+		int len = m.buckets.length;
+		for (int i = 0 ; i < steps ; i++) {
+			int op = rnd(10);
+			if (op < 5)
+				m.insert(Integer.valueOf(rnd(1000)));
+			else {
+				ObjListElem b = m.buckets[rnd(len)];
+				IntListElem e = (IntListElem) b.value;
+				if (e != null) {
+					if (op < 7)
+						b.value = e.next;
+					else if (op < 8)
+						e.value += rnd(2);
+					else if (e.next != null)
+						e.next = e.next.next;
+				}
+			}
+			if (rnd(3) == 0)
+				continue;
+			boolean match = true;
+			for (int b = 0 ; b < len ; b++)
+				for (IntListElem e = (IntListElem) m.buckets[b].value ; e != null ; e = e.next)
+					if (e.value % len != b)
+						match = false;
+			check("hash codesMatchBuckets", m.codesMatchBuckets(0, len), match);
+		}
+	}
+	
+	// makes changes to a tree like oracleTree, but has its invariant 
+	// checked by the asynchronous checker: first with no lag, where 
+	// every call must get the result for its own arguments, then with 
+	// some, where only the checks made once the changes are done must 
+	// be right. either way the listener must get every epoch, in order.
+	// some of the changes are made by threads that never call an 
+	// invariant, and about a quarter of the checks are of the left 
+	// subtree, which must not be answered with the whole tree's result
+	private static long runAsync(int n) {
+		System.out.println("Performing asynchronous tests");
+		long start = System.currentTimeMillis();
+		asyncTree(n, 0);
+		asyncTree(n, 4);
+		System.out.println(checks + " checks, " + mismatches + " mismatches");
+		if (mismatches > 0)
+			System.exit(1);
+		return start;
+	}
+	
+	static class AsyncResults implements CheckListener {
+		ArrayList results = new ArrayList();
+		long last;
+		int outOfOrder;
+		
+		public synchronized void checked(FunctionData fd, Object[] args, Object result, long epoch) {
+			if (epoch != last + 1)
+				outOfOrder++;
+			last = epoch;
+			results.add(result);
+		}
+		
+		public void failed(FunctionData fd, Object[] args, Throwable t, long epoch) {
+			checked(fd, args, t, epoch);
+		}
+	}
+	
+	static class TreeChanger extends Thread {
+		OrderedIntTree t;
+		
+		TreeChanger(OrderedIntTree t) {
+			this.t = t;
+		}
+		
+		public void run() {
+			changeTree(t);
+		}
+	}
+	
+	private static void asyncTree(int steps, int lag) {
+		OrderedIntTree t = new OrderedIntTree();
+		t.doInvariants = false;
+		AsyncResults l = new AsyncResults();
+		ArrayList expected = new ArrayList();
+		String what = "async tree, lag " + lag;
+		Dispatch.startAsync(lag, l);
+		for (int i = 0 ; i <= steps ; i++) {
+			// the last round only checks, once the changes are done
+			if (i < steps) {
+				if (rnd(4) == 0) {
+					TreeChanger c = new TreeChanger(t);
+					c.start();
+					try {
+						c.join();
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				} else
+					changeTree(t);
+				if (rnd(3) == 0)
+					continue;
+			}
+			IntTreeElem e = t.root;
+			int upper = Integer.MAX_VALUE;
+			if (e != null && rnd(4) == 0) {
+				upper = e.value;
+				e = e.left;
+			}
+			boolean plain = ordered(e, Integer.MIN_VALUE, upper);
+			boolean incremental = t.isOrdered(e, Integer.MIN_VALUE, upper);
+			expected.add(Boolean.valueOf(plain));
+			if (lag == 0 || i == steps)
+				check(what, incremental, plain);
+		}
+		Dispatch.stopAsync();
+		check(what + " epochs in order", l.outOfOrder == 0 && l.results.size() == expected.size(), true);
+		for (int i = 0 ; i < expected.size() ; i++)
+			if (lag == 0 || i == expected.size() - 1)
+				check(what + " listener", expected.get(i).equals(l.results.get(i)), true);
+	}
+	
+	private static long usedMemory() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0 ; i < 4 ; i++)
+			System.gc();
+		return rt.totalMemory() - rt.freeMemory();
+	}
+	
+	// builds, checks and drops 100 ordered trees and 100 red-black trees
+	// of n elements, one after another. once they are gone, none of their
+	// functions may still be registered, and the heap should be back to 
+	// where it started. the red-black trees share the nil sentinel, 
+	// which must not keep any of them alive; nor may the pruned nodes 
+	// their functions keep for reuse, so those are kept throughout
+	private static long runRetention(int n) {
+		System.out.println("Performing retention tests");
+		if (Dispatch.recycleNodes == 0)
+			Dispatch.recycleNodes = 64;
+		long before = usedMemory();
+		long start = System.currentTimeMillis();
+		for (int round = 0 ; round < 100 ; round++) {
+			OrderedIntTree t = new OrderedIntTree();
+			t.doInvariants = false;
+			for (int i = 0 ; i < n ; i++)
+				t.insert(rnd(1 << 30));
+			t.doInvariants = true;
+			for (int i = 0 ; i < 50 ; i++)
+				t.insert(rnd(1 << 30));
+		}
+		for (int round = 0 ; round < 100 ; round++) {
+			TreeMap t = new TreeMap();
+			for (int i = 0 ; i < n ; i++)
+				t.put(i, n);
+			for (int i = 0 ; i < 50 ; i++) {
+				t.invariants();
+				t.put(n + i, n);
+				t.invariants();
+			}
+		}
+		long retained = usedMemory() - before;
+		int live = Dispatch.numFunctions();
+		System.out.println(retained / 1024 + " KB retained, " + live + " functions still registered");
+		if (live > 0)
+			System.exit(1);
+		return start;
+	}
+	
+	private static int caught(String what, boolean caught) {
+		System.out.println(what + (caught ? ": caught" : ": NOT CAUGHT"));
+		return (caught ? 0 : 1);
+	}
+	
+	// builds each structure of n elements with its invariants checked, 
+	// breaks it with barf(), and checks that the invariants notice
+	private static long runBarf(int n) {
+		System.out.println("Performing barf tests");
+		long start = System.currentTimeMillis();
+		int missed = 0;
+		
+		OrderedIntList l = new OrderedIntList();
+		for (int i = 0 ; i < n ; i++)
+			l.insert(rnd(n));
+		l.doInvariants = false;
+		l.barf();
+		missed += caught("ordered list", ! l.isOrdered(l.head));
+		
+		OrderedIntTree t = new OrderedIntTree();
+		for (int i = 0 ; i < n ; i++)
+			t.insert(rnd(n));
+		t.doInvariants = false;
+		t.barf();
+		missed += caught("ordered tree", ! t.isOrdered(t.root, Integer.MIN_VALUE, Integer.MAX_VALUE));
+		
+		AssocList a = new AssocList();
+		for (int i = 0 ; i < n ; i++)
+			a.insert(i, i + 1);
+		a.doInvariants = false;
+		a.barf();
+		missed += caught("assoc list", ! a.isEven(a.head));
+		
+		TreeMap rb = new TreeMap();
+		for (int i = 0 ; i < n ; i++) {
+			rb.invariants();
+			rb.put(i, n);
+			rb.invariants();
+		}
+		rb.barf();
+		missed += caught("red-black tree", ! rb.invariantsHold());
+		
+		IntHashSet m = new IntHashSet(n);
+		m.doInvariants = true;
+		for (int i = 0 ; i < n ; i++)
+			m.insert(i);
+		m.doInvariants = false;
+		m.barf();
+		missed += caught("hash set", ! m.codesMatchBuckets(0, m.buckets.length));
+		
+		// inside a batch the check still answers from before barf(); 
+		// endBatch() has to hand back the failure
+		OrderedIntTree bt = new OrderedIntTree();
+		for (int i = 0 ; i < n ; i++)
+			bt.insert(rnd(n));
+		bt.doInvariants = false;
+		bt.isOrdered(bt.root, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		Dispatch.beginBatch();
+		bt.barf();
+		boolean stale = bt.isOrdered(bt.root, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		missed += caught("batched tree", stale && Dispatch.endBatch().size() == 1);
+		
+		if (missed > 0)
+			System.exit(1);
+		return start;
+	}
+	
+	// checks Transform.isImmutable against ImmutableFields, whose 
+	// fields named fixed* are the only ones that should count as 
+	// immutable. must be run from the directory holding the classes
+	private static long runImmutable() {
+		System.out.println("Performing immutable field tests");
+		long start = System.currentTimeMillis();
+		java.lang.reflect.Field[] fs = ImmutableFields.class.getDeclaredFields();
+		int wrong = 0;
+		for (int i = 0 ; i < fs.length ; i++) {
+			String name = fs[i].getName();
+			boolean expected = name.startsWith("fixed");
+			if (Transform.isImmutable("test.ImmutableFields", name) != expected) {
+				System.out.println("Field " + name + " should " + (expected ? "" : "not ") + "be immutable");
+				wrong++;
+			}
+		}
+		System.out.println(fs.length + " fields, " + wrong + " wrong");
+		if (wrong > 0)
+			System.exit(1);
+		return start;
+	}
+	
+	private static long runAssocList(int n, int reps, boolean do_invariants) {
+		System.out.println("Performing assoc list tests");
+		AssocList a = new AssocList();
+		a.doInvariants = do_invariants;
+	  System.out.println("Inserting " + n + " elements into list...");
+		int[] added = new int[n];
+	  for (int i = 0 ; i < n ; i++) {
+			a.insert(i, i+1);
+			added[i]++;
+		}
+	  System.out.println("Adding done");
+		long start = System.currentTimeMillis();
+		int adds = 0;
+		for (int j = 0 ; j < reps ; j++) {
+			//if (j%1 == 0) System.out.println("Size is " + a.size + " with +" + (2*adds - j) + " adds");
+			int which = rnd(2);
+			switch (which) {
+			case 0:
+				if (a.size == 0)
+					continue;
+				int toremove = rnd(n);
+				while (added[toremove] == 0) {
+					toremove = rnd(n);
+				}
+				//System.out.print("Removing " + toremove + " ");
+				added[toremove]--;
+				a.remove(toremove);
+				break;
+			case 1:
+				adds++;
+				int toadd = rnd(n);
+				added[toadd]++;
+				//System.out.print("Adding " + toadd + "   ");
+				a.insert(toadd, n);
+				break;
+			}
+		}
+		//a.barf();
+		System.out.println(adds + " adds of " + reps + " total; size is " + a.size);
+		return start;
+	}
+}
+